@@ -1,37 +1,74 @@
 package com.nidoham.skymate;
 
+import android.app.Activity;
+import android.app.ActivityManager;
 import android.app.Application;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.preference.PreferenceManager;
 
 import com.nidoham.skymate.error.ReCaptchaActivity;
+import com.nidoham.skymate.metrics.MetricsRegistry;
+import com.nidoham.skymate.network.CachingDns;
+import com.nidoham.skymate.network.HttpCore;
+import com.nidoham.skymate.network.RecordingDownloader;
+import com.nidoham.skymate.network.ReplayDownloader;
 import com.nidoham.strivo.Localization.Localizations;
 import com.nidoham.strivo.settings.ApplicationSettings;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
 import org.schabi.newpipe.extractor.downloader.Downloader;
+import org.schabi.newpipe.util.InfoCache;
+import org.schabi.newpipe.util.InfoDiskCache;
+import org.schabi.newpipe.util.WeightedInfoCache;
 import org.schabi.newpipe.util.image.PicassoHelper;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.rxjava3.exceptions.UndeliverableException;
+import io.reactivex.rxjava3.plugins.RxJavaPlugins;
+
 public class App extends Application {
 
     private static final String TAG = "SkymateApp";
     private static final String CRASH_LOG_KEY = "crash_log";
+    private static final String DOWNLOADER_FIXTURE_FILE = "downloader_fixture.bin";
+
+    // activities between onStart and onStop, i.e. whether the app is in the foreground
+    private final AtomicInteger startedActivities = new AtomicInteger();
 
     @Override
     public void onCreate() {
         super.onCreate();
+        registerActivityLifecycleCallbacks(new StartedActivityCounter());
         
         // Initialize settings
         ApplicationSettings.getInstance(this);
+
+        // Resolve the hosts every launch needs while the UI is still being created; the
+        // debug process does not load anything from them
+        if (isMainProcess()) {
+            HttpCore.getDns().attach(this);
+            HttpCore.getDns().warmUp(CachingDns.WARM_UP_HOSTS);
+        }
+
         PicassoHelper.init(this);
+        InfoDiskCache.init(this);
+        WeightedInfoCache.getInstance().init(this);
         
         // Setup crash handler
         Thread.setDefaultUncaughtExceptionHandler(this::handleAppCrash);
+        configureRxJavaErrorHandler();
 
         // Initialize NewPipe
         try {
@@ -43,12 +80,67 @@ public class App extends Application {
         }
     }
 
+    private boolean isMainProcess() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return getPackageName().equals(Application.getProcessName());
+        }
+        final ActivityManager activityManager = getSystemService(ActivityManager.class);
+        final int pid = android.os.Process.myPid();
+        if (activityManager != null && activityManager.getRunningAppProcesses() != null) {
+            for (ActivityManager.RunningAppProcessInfo process
+                    : activityManager.getRunningAppProcesses()) {
+                if (process.pid == pid) {
+                    return getPackageName().equals(process.processName);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        WeightedInfoCache.getInstance().onTrimMemory(level);
+        PicassoHelper.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            InfoCache.getInstance().clearCache();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            InfoCache.getInstance().trimCache();
+        }
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            // the app went to background: keep the latest metrics readable by DebugActivity
+            MetricsRegistry.getInstance().writeSnapshotAsync(this);
+        }
+    }
+
+    /**
+     * A load which is disposed while it runs, e.g. because its page was left or it missed a
+     * deadline, is interrupted by {@link com.nidoham.skymate.util.LoadScheduler}; the error it
+     * then fails with has no subscriber left, and RxJava would crash the app with it.
+     */
+    private void configureRxJavaErrorHandler() {
+        RxJavaPlugins.setErrorHandler(throwable -> {
+            final Throwable error = throwable instanceof UndeliverableException
+                    ? throwable.getCause() : throwable;
+            if (throwable instanceof UndeliverableException
+                    && (error instanceof IOException || error instanceof InterruptedException
+                            || error instanceof ExtractionException)) {
+                Log.d(TAG, "Ignoring error of a disposed subscription", error);
+                return;
+            }
+            handleAppCrash(Thread.currentThread(), error);
+        });
+    }
+
     private void handleAppCrash(Thread thread, Throwable throwable) {
         try {
             Log.e(TAG, "App crashed", throwable);
             
             String crashLog = Log.getStackTraceString(throwable);
             saveCrashLog(crashLog);
+            // synchronously, the process is killed right after
+            MetricsRegistry.getInstance().writeSnapshot(this);
             launchDebugActivity(crashLog);
             
         } catch (Exception e) {
@@ -92,11 +184,51 @@ public class App extends Application {
     }
 
     private Downloader createDownloader() {
-        final DownloaderImpl downloader = DownloaderImpl.init(null);
+        final File fixture = new File(getFilesDir(), DOWNLOADER_FIXTURE_FILE);
+        if ("replay".equals(BuildConfig.DOWNLOADER_MODE)) {
+            try {
+                return new ReplayDownloader(fixture,
+                        ReplayDownloader.Profile.forName(BuildConfig.REPLAY_PROFILE));
+            } catch (IOException e) {
+                Log.e(TAG, "Could not load downloader fixture, using the network", e);
+            }
+        }
+
+        final DownloaderImpl downloader = DownloaderImpl.init(null, this);
+        downloader.setReCaptchaHandler(this::showReCaptcha);
         setCookies(downloader);
+        if ("record".equals(BuildConfig.DOWNLOADER_MODE)) {
+            try {
+                return new RecordingDownloader(downloader, fixture);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not create downloader fixture, not recording", e);
+            }
+        }
         return downloader;
     }
 
+    /**
+     * Lets the user solve a reCAPTCHA challenge, if the app is in the foreground: activities
+     * cannot be started from the background, and nobody would solve it there anyway.
+     *
+     * @return whether {@link ReCaptchaActivity} was started, which reports the result to
+     *         {@link DownloaderImpl#onReCaptchaResult(boolean)} when it finishes
+     */
+    private boolean showReCaptcha(final String url) {
+        if (startedActivities.get() == 0) {
+            return false;
+        }
+        try {
+            startActivity(new Intent(this, ReCaptchaActivity.class)
+                    .putExtra(ReCaptchaActivity.RECAPTCHA_URL_EXTRA, url)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not show reCAPTCHA", e);
+            return false;
+        }
+    }
+
     private void setCookies(DownloaderImpl downloader) {
         try {
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
@@ -149,4 +281,38 @@ public class App extends Application {
             Log.w(TAG, "Failed to clear crash log", e);
         }
     }
-}
\ No newline at end of file
+
+    private final class StartedActivityCounter implements ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {
+            startedActivities.incrementAndGet();
+        }
+
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {
+            startedActivities.decrementAndGet();
+        }
+
+        @Override
+        public void onActivityCreated(@NonNull Activity activity,
+                                      @Nullable Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(@NonNull Activity activity,
+                                                @NonNull Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(@NonNull Activity activity) {
+        }
+    }
+}
@@ -15,6 +15,7 @@ import android.widget.Toast;
 import androidx.preference.PreferenceManager;
 
 import com.nidoham.skymate.R;
+import com.nidoham.skymate.metrics.MetricsRegistry;
 
 public class DebugActivity extends Activity {
 
@@ -22,6 +23,7 @@ public class DebugActivity extends Activity {
     private Button copyButton;
     private Button closeButton;
     private Button restartButton;
+    private Button exportStatsButton;
 
     // SharedPreferences crash log key (App.java থেকে match করতে হবে)
     private static final String PREF_CRASH_LOG_KEY = "crash_log";
@@ -50,6 +52,7 @@ public class DebugActivity extends Activity {
         copyButton = findViewById(R.id.btn_copy);
         closeButton = findViewById(R.id.btn_close);
         restartButton = findViewById(R.id.btn_restart); // Add this button to your layout
+        exportStatsButton = findViewById(R.id.btn_export_stats);
     }
 
     private void loadErrorMessage() {
@@ -98,6 +101,13 @@ public class DebugActivity extends Activity {
         // Add the actual error
         formatted.append("Error Details:\n");
         formatted.append(originalError);
+
+        // Network timings, written by the main process (this activity runs in its own process)
+        String networkStats = MetricsRegistry.readSnapshot(this);
+        if (networkStats != null) {
+            formatted.append("\n\n=== Network Stats ===\n");
+            formatted.append(networkStats);
+        }
         
         return formatted.toString();
     }
@@ -139,6 +149,10 @@ public class DebugActivity extends Activity {
             }
         });
 
+        if (exportStatsButton != null) {
+            exportStatsButton.setOnClickListener(v -> exportNetworkStats());
+        }
+
         // Add restart functionality
         if (restartButton != null) {
             restartButton.setOnClickListener(v -> {
@@ -152,6 +166,25 @@ public class DebugActivity extends Activity {
         }
     }
 
+    private void exportNetworkStats() {
+        try {
+            String networkStats = MetricsRegistry.readSnapshot(this);
+            if (networkStats == null) {
+                Toast.makeText(this, "No network stats recorded yet", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            Intent shareIntent = new Intent(Intent.ACTION_SEND);
+            shareIntent.setType("text/plain");
+            shareIntent.putExtra(Intent.EXTRA_SUBJECT, "SkyMate Network Stats");
+            shareIntent.putExtra(Intent.EXTRA_TEXT, networkStats);
+            startActivity(Intent.createChooser(shareIntent, "Export Network Stats"));
+        } catch (Exception e) {
+            Log.e("DebugActivity", "Error exporting network stats", e);
+            Toast.makeText(this, "Failed to export: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void clearCrashLog() {
         try {
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
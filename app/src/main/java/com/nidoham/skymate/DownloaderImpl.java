@@ -5,28 +5,36 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.nidoham.skymate.error.ReCaptchaActivity;
+import com.nidoham.skymate.network.DomainCookieJar;
+import com.nidoham.skymate.network.HostRateLimiter;
+import com.nidoham.skymate.network.HttpCore;
+import com.nidoham.skymate.network.RequestHedger;
+import com.nidoham.skymate.network.ResponseBodyReader;
+import com.nidoham.skymate.network.ResponseCachePolicy;
+import com.nidoham.skymate.network.RevalidationInterceptor;
+import com.nidoham.skymate.network.SingleFlight;
+import com.nidoham.skymate.network.VariantCacheInterceptor;
 
 import org.schabi.newpipe.extractor.downloader.Downloader;
 import org.schabi.newpipe.extractor.downloader.Request;
 import org.schabi.newpipe.extractor.downloader.Response;
 import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
 import org.schabi.newpipe.settings.YouTubeSettingsManager;
-import org.schabi.newpipe.util.InfoCache;
+import org.schabi.newpipe.util.ContentVariant;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import okio.ByteString;
 
 public final class DownloaderImpl extends Downloader {
 
@@ -38,51 +46,103 @@ public final class DownloaderImpl extends Downloader {
     public static final String YOUTUBE_RESTRICTED_MODE_COOKIE = "PREF=f2=8000000";
     public static final String YOUTUBE_DOMAIN = "youtube.com";
 
+    private static final String HTTP_CACHE_DIRECTORY = "okhttp";
+    private static final long HTTP_CACHE_SIZE = 32L * 1024L * 1024L;
+
     private static DownloaderImpl instance;
-    private final Map<String, String> mCookies;
+    private final DomainCookieJar cookieJar;
     private final OkHttpClient client;
+    private final SingleFlight<Response> inFlightRequests = new SingleFlight<>();
+    private final ResponseBodyReader bodyReader = new ResponseBodyReader();
+    private final HostRateLimiter rateLimiter = new HostRateLimiter();
+    private final RequestHedger hedger;
 
     private DownloaderImpl(final OkHttpClient.Builder builder) {
         this.client = builder
                 .readTimeout(30, TimeUnit.SECONDS)
                 .build();
-        this.mCookies = new HashMap<>();
+        this.cookieJar = new DomainCookieJar();
+        this.hedger = new RequestHedger(client, HttpCore.API_CLIENT, rateLimiter,
+                RequestHedger.DEFAULT_PERCENTILE, RequestHedger.DEFAULT_BUDGET);
     }
 
     public static DownloaderImpl init(@Nullable final OkHttpClient.Builder builder) {
-        instance = new DownloaderImpl(
-                builder != null ? builder : new OkHttpClient.Builder());
+        return init(builder, null);
+    }
+
+    /**
+     * @param builder the builder to create the client from, or {@code null} for a default one
+     * @param context if not {@code null}, responses are cached in the app-private cache directory,
+     *                per {@link ContentVariant}, and revalidated with their
+     *                {@code ETag}/{@code Last-Modified} validators
+     * @return the new instance, also available through {@link #getInstance()}
+     */
+    public static DownloaderImpl init(@Nullable final OkHttpClient.Builder builder,
+                                      @Nullable final Context context) {
+        final OkHttpClient.Builder clientBuilder =
+                builder != null ? builder : HttpCore.newApiClientBuilder();
+        if (context != null) {
+            clientBuilder
+                    .cache(new Cache(new File(context.getCacheDir(), HTTP_CACHE_DIRECTORY),
+                            HTTP_CACHE_SIZE))
+                    .addNetworkInterceptor(new VariantCacheInterceptor())
+                    .addNetworkInterceptor(new RevalidationInterceptor());
+        }
+        instance = new DownloaderImpl(clientBuilder);
         return instance;
     }
 
     public static DownloaderImpl getInstance() {
         if (instance == null) {
-            instance = new DownloaderImpl(new OkHttpClient.Builder());
+            instance = new DownloaderImpl(HttpCore.newApiClientBuilder());
         }
         return instance;
     }
 
     public String getCookies(final String url) {
-        final String youtubeCookie = url.contains(YOUTUBE_DOMAIN)
-                ? getCookie(YOUTUBE_RESTRICTED_MODE_COOKIE_KEY) : null;
-
-        return Stream.of(youtubeCookie, getCookie(ReCaptchaActivity.RECAPTCHA_COOKIES_KEY))
-                .filter(Objects::nonNull)
-                .flatMap(cookies -> Arrays.stream(cookies.split("; *")))
-                .distinct()
-                .collect(Collectors.joining("; "));
+        final HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl == null ? "" : cookieJar.getCookieHeader(httpUrl.host());
     }
 
     public String getCookie(final String key) {
-        return mCookies.get(key);
+        return cookieJar.get(key);
     }
 
+    /**
+     * Stores cookies which are sent to every host, e.g. the reCAPTCHA exemption cookies.
+     */
     public void setCookie(final String key, final String cookie) {
-        mCookies.put(key, cookie);
+        cookieJar.put(key, cookie, null);
+    }
+
+    /**
+     * Stores cookies which are only sent to {@code domain} and its subdomains.
+     */
+    public void setCookie(final String key, final String cookie, final String domain) {
+        cookieJar.put(key, cookie, domain);
     }
 
     public void removeCookie(final String key) {
-        mCookies.remove(key);
+        cookieJar.remove(key);
+    }
+
+    /**
+     * @param handler shows reCAPTCHA challenges to the user; while none is set or it declines a
+     *                challenge, requests are not held back after a host answered with one
+     */
+    public void setReCaptchaHandler(@Nullable final HostRateLimiter.ChallengeHandler handler) {
+        rateLimiter.setChallengeHandler(handler);
+    }
+
+    /**
+     * Releases the requests held back since a host answered with a reCAPTCHA challenge.
+     *
+     * @param solved whether new cookies were stored with {@link #setCookie(String, String)}; if
+     *               so the held requests are sent, otherwise they fail with a
+     *               {@link ReCaptchaException}
+     */
+    public void onReCaptchaResult(final boolean solved) {
+        rateLimiter.resolveChallenges(solved);
     }
 
     // ✅ এখন YouTubeSettingsManager ব্যবহার করে রেস্ট্রিক্টেড মোড চেক করা হচ্ছে
@@ -94,11 +154,13 @@ public final class DownloaderImpl extends Downloader {
 
     public void updateYoutubeRestrictedModeCookies(final boolean youtubeRestrictedModeEnabled) {
         if (youtubeRestrictedModeEnabled) {
-            setCookie(YOUTUBE_RESTRICTED_MODE_COOKIE_KEY, YOUTUBE_RESTRICTED_MODE_COOKIE);
+            setCookie(YOUTUBE_RESTRICTED_MODE_COOKIE_KEY, YOUTUBE_RESTRICTED_MODE_COOKIE,
+                    YOUTUBE_DOMAIN);
         } else {
             removeCookie(YOUTUBE_RESTRICTED_MODE_COOKIE_KEY);
         }
-        InfoCache.getInstance().clearCache();
+
+        ContentVariant.setRestrictedMode(youtubeRestrictedModeEnabled);
     }
 
     public long getContentLength(final String url) throws IOException {
@@ -125,14 +187,19 @@ public final class DownloaderImpl extends Downloader {
             requestBody = RequestBody.create(dataToSend);
         }
 
+        final HttpUrl httpUrl = HttpUrl.get(url);
         final okhttp3.Request.Builder requestBuilder = new okhttp3.Request.Builder()
                 .method(httpMethod, requestBody)
-                .url(url)
+                .url(httpUrl)
                 .addHeader("User-Agent", USER_AGENT);
 
-        final String cookies = getCookies(url);
-        if (!cookies.isEmpty()) {
-            requestBuilder.addHeader("Cookie", cookies);
+        // only GET responses are cached, so the policy is meaningless for other methods
+        final CacheControl cacheControl = ResponseCachePolicy.forUrl(httpUrl).getCacheControl();
+        if ("GET".equals(httpMethod)) {
+            if (cacheControl != null) {
+                requestBuilder.cacheControl(cacheControl);
+            }
+            requestBuilder.header(VariantCacheInterceptor.HEADER, ContentVariant.current());
         }
 
         headers.forEach((headerName, headerValueList) -> {
@@ -143,9 +210,84 @@ public final class DownloaderImpl extends Downloader {
 
        // requestBuilder.addHeader("Accept-Language", "bn-BD");
 
+        final okhttp3.Request okHttpRequest = requestBuilder.build();
+        return inFlightRequests.execute(
+                singleFlightKeyOf(okHttpRequest, dataToSend),
+                () -> executeOnNetwork(okHttpRequest));
+    }
+
+    /**
+     * @return how many {@link #execute(Request)} calls shared the network round trip of an
+     *         identical request which was already in flight
+     */
+    public long getCoalescedRequestCount() {
+        return inFlightRequests.getCoalescedCount();
+    }
+
+    /**
+     * @return how many {@link #execute(Request)} calls actually went to the network
+     */
+    public long getExecutedRequestCount() {
+        return inFlightRequests.getExecutedCount();
+    }
+
+    /**
+     * Enables or disables sending a second copy of idempotent requests which take longer than
+     * almost all earlier ones, see {@link RequestHedger}. Enabled by default.
+     */
+    public void setHedgingEnabled(final boolean enabled) {
+        hedger.setEnabled(enabled);
+    }
+
+    /**
+     * @return how many requests were hedged since this instance was created
+     */
+    public long getHedgedRequestCount() {
+        return hedger.getHedgeCount();
+    }
+
+    /**
+     * @return the number of response body bytes read since this instance was created
+     */
+    public long getTotalResponseBytes() {
+        return bodyReader.getTotalBytesRead();
+    }
+
+    /**
+     * The key covers everything that can change the response: method, URL, body, headers and
+     * the content variant (e.g. restricted mode on or off), which stands in for the cookies since
+     * they are only added once the request is sent.
+     */
+    private static String singleFlightKeyOf(final okhttp3.Request request,
+                                            @Nullable final byte[] dataToSend) {
+        final StringBuilder key = new StringBuilder(request.method())
+                .append(' ')
+                .append(request.url())
+                .append('\n');
+        if (dataToSend != null) {
+            key.append(ByteString.of(dataToSend).sha256().hex());
+        }
+        return key.append('\n')
+                .append(ContentVariant.current())
+                .append('\n')
+                .append(request.headers())
+                .toString();
+    }
+
+    private Response executeOnNetwork(final okhttp3.Request requestWithoutCookies)
+            throws IOException, ReCaptchaException {
+        final String url = requestWithoutCookies.url().toString();
+        final String host = requestWithoutCookies.url().host();
+        rateLimiter.acquire(host);
+        // only read the cookies now, so that a request held back for a reCAPTCHA challenge is
+        // sent with the cookies stored by solving it
+        final okhttp3.Request request = withCookies(requestWithoutCookies, host);
+        // while a reCAPTCHA is pending, YouTube must not see any request it does not need to
         try (
-                okhttp3.Response response = client.newCall(requestBuilder.build()).execute()
+                okhttp3.Response response = rateLimiter.isChallengePending()
+                        ? client.newCall(request).execute() : hedger.execute(request)
         ) {
+            rateLimiter.onResponse(host, url, response.code(), response.headers());
             if (response.code() == 429) {
                 throw new ReCaptchaException("reCaptcha Challenge requested", url);
             }
@@ -153,7 +295,7 @@ public final class DownloaderImpl extends Downloader {
             String responseBodyToReturn = null;
             try (ResponseBody body = response.body()) {
                 if (body != null) {
-                    responseBodyToReturn = body.string();
+                    responseBodyToReturn = bodyReader.read(body).text;
                 }
             }
 
@@ -166,4 +308,17 @@ public final class DownloaderImpl extends Downloader {
                     latestUrl);
         }
     }
+
+    /**
+     * @return the request with the cookies for the host, unless it already has its own
+     */
+    private okhttp3.Request withCookies(final okhttp3.Request request, final String host) {
+        final String cookies = cookieJar.getCookieHeader(host);
+        if (cookies.isEmpty() || request.header("Cookie") != null) {
+            return request;
+        }
+        return request.newBuilder()
+                .header("Cookie", cookies)
+                .build();
+    }
 }
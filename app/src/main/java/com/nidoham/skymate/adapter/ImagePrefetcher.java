@@ -0,0 +1,324 @@
+package com.nidoham.skymate.adapter;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.nidoham.skymate.R;
+import com.nidoham.skymate.metrics.MetricsRegistry;
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.util.image.ImageStrategy;
+import org.schabi.newpipe.util.image.PicassoHelper;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the thumbnails and avatars of the items a {@link VideoAdapter} list is scrolling towards
+ * into Picasso's memory cache, so that rows coming into view show their images right away
+ * instead of placeholders.
+ * <br>
+ * Images are fetched with {@link Picasso.Priority#LOW} at the size the rows show them, measured
+ * from a laid out row, so that the prefetched bitmaps have the same cache keys as the ones the
+ * rows request. The faster the list scrolls, the more items ahead are prefetched, and fetches
+ * of items which are no longer ahead are cancelled. Prefetching pauses for a while after the
+ * system reported memory pressure, since the fetched bitmaps would be evicted right away.
+ * <br>
+ * Each row coming into view counts as {@code image.prefetch.hit} if its thumbnail was
+ * prefetched, {@code image.prefetch.late} if the fetch was still running, and
+ * {@code image.prefetch.miss} otherwise.
+ */
+@MainThread
+public final class ImagePrefetcher {
+
+    private static final int MIN_ITEMS_AHEAD = 2;
+    private static final int MAX_ITEMS_AHEAD = 10;
+    // prefetch the items which will come into view within this time at the current speed
+    private static final long LOOKAHEAD_MILLIS = 1000;
+    private static final long PAUSE_AFTER_TRIM_MILLIS = 30_000;
+    // weight of a new sample in the scroll speed average
+    private static final double SMOOTHING = 0.3;
+    // thumbnail URLs already fetched, likely still in the memory cache
+    private static final int MAX_REMEMBERED = 128;
+
+    @NonNull
+    private final Context context;
+    @Nullable
+    private RecyclerView recyclerView;
+    @Nullable
+    private List<StreamInfoItem> items;
+
+    // by URL, with one tag per URL so that fetches can be cancelled one by one
+    private final Map<String, Object> inFlight = new HashMap<>();
+    private final Set<String> fetched = new LinkedHashSet<>();
+
+    private int thumbnailWidth;
+    private int thumbnailHeight;
+    private int avatarSize;
+    private int itemHeight;
+
+    private double pixelsPerSecond;
+    private long lastScrollMillis;
+    private long pausedUntilMillis;
+
+    private final RecyclerView.OnScrollListener scrollListener =
+            new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(@NonNull final RecyclerView view, final int dx,
+                                       final int dy) {
+                    onScrolledBy(dy);
+                }
+            };
+
+    private final RecyclerView.OnChildAttachStateChangeListener attachListener =
+            new RecyclerView.OnChildAttachStateChangeListener() {
+                @Override
+                public void onChildViewAttachedToWindow(@NonNull final View view) {
+                    countAttached(view);
+                }
+
+                @Override
+                public void onChildViewDetachedFromWindow(@NonNull final View view) {
+                }
+            };
+
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(final int level) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                pause();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            pause();
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull final Configuration newConfig) {
+            // the rows' size might have changed
+            thumbnailWidth = 0;
+        }
+    };
+
+    public ImagePrefetcher(@NonNull final Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Starts watching the list, whose adapter shows the given items.
+     */
+    public void attach(@NonNull final RecyclerView view,
+                       @NonNull final List<StreamInfoItem> listItems) {
+        detach();
+        recyclerView = view;
+        items = listItems;
+        view.addOnScrollListener(scrollListener);
+        view.addOnChildAttachStateChangeListener(attachListener);
+        context.registerComponentCallbacks(memoryCallbacks);
+    }
+
+    /**
+     * Stops watching the list and cancels all running fetches.
+     */
+    public void detach() {
+        if (recyclerView != null) {
+            recyclerView.removeOnScrollListener(scrollListener);
+            recyclerView.removeOnChildAttachStateChangeListener(attachListener);
+            context.unregisterComponentCallbacks(memoryCallbacks);
+            recyclerView = null;
+        }
+        items = null;
+        cancelAll();
+    }
+
+    private void pause() {
+        pausedUntilMillis = SystemClock.uptimeMillis() + PAUSE_AFTER_TRIM_MILLIS;
+        cancelAll();
+        MetricsRegistry.getInstance().counter("image.prefetch.paused").incrementAndGet();
+    }
+
+    private void cancelAll() {
+        for (final Object tag : inFlight.values()) {
+            PicassoHelper.cancelTag(tag);
+        }
+        inFlight.clear();
+    }
+
+    private void onScrolledBy(final int dy) {
+        final long now = SystemClock.uptimeMillis();
+        if (now > lastScrollMillis) {
+            final double sample = Math.abs(dy) * 1000.0 / (now - lastScrollMillis);
+            pixelsPerSecond = now - lastScrollMillis > LOOKAHEAD_MILLIS
+                    ? sample : pixelsPerSecond + SMOOTHING * (sample - pixelsPerSecond);
+        }
+        lastScrollMillis = now;
+        if (dy != 0) {
+            update(dy > 0);
+        }
+    }
+
+    /**
+     * Measures the images of a laid out row.
+     *
+     * @return whether the sizes are known
+     */
+    private boolean measureRow() {
+        if (thumbnailWidth > 0) {
+            return true;
+        } else if (recyclerView == null || recyclerView.getChildCount() == 0) {
+            return false;
+        }
+
+        final View row = recyclerView.getChildAt(0);
+        final View thumbnail = row.findViewById(R.id.img_thumb);
+        final View avatar = row.findViewById(R.id.img_avatar);
+        if (thumbnail == null || avatar == null || thumbnail.getWidth() == 0) {
+            return false;
+        }
+        thumbnailWidth = thumbnail.getWidth();
+        thumbnailHeight = thumbnail.getHeight();
+        avatarSize = avatar.getWidth();
+        itemHeight = row.getHeight();
+        return true;
+    }
+
+    private int itemsAhead() {
+        final double pixelsAhead = pixelsPerSecond * LOOKAHEAD_MILLIS / 1000.0;
+        final int itemsAhead = (int) Math.ceil(pixelsAhead / Math.max(1, itemHeight));
+        return Math.max(MIN_ITEMS_AHEAD, Math.min(MAX_ITEMS_AHEAD, itemsAhead));
+    }
+
+    private void update(final boolean scrollingDown) {
+        if (recyclerView == null || items == null
+                || SystemClock.uptimeMillis() < pausedUntilMillis
+                || !ImageStrategy.shouldLoadImages()
+                || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)
+                || !measureRow()) {
+            return;
+        }
+
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) recyclerView.getLayoutManager();
+        final int first = layoutManager.findFirstVisibleItemPosition();
+        final int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        final int start = scrollingDown ? last + 1 : Math.max(0, first - itemsAhead());
+        final int end = scrollingDown ? Math.min(items.size(), last + 1 + itemsAhead()) : first;
+
+        final Map<String, Boolean> wanted = new HashMap<>(); // URL to whether it is an avatar
+        for (int i = start; i < end; i++) {
+            final StreamInfoItem item = items.get(i);
+            if (item == null) {
+                continue; // not read from the feed store yet
+            }
+            final String thumbnailUrl = ImageStrategy.choosePreferredImage(item.getThumbnails());
+            final String avatarUrl =
+                    ImageStrategy.choosePreferredImage(item.getUploaderAvatars());
+            if (thumbnailUrl != null) {
+                wanted.put(thumbnailUrl, false);
+            }
+            if (avatarUrl != null) {
+                wanted.put(avatarUrl, true);
+            }
+        }
+
+        final Iterator<Map.Entry<String, Object>> iterator = inFlight.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Object> entry = iterator.next();
+            if (!wanted.containsKey(entry.getKey())) {
+                PicassoHelper.cancelTag(entry.getValue());
+                iterator.remove();
+                MetricsRegistry.getInstance().counter("image.prefetch.cancelled")
+                        .incrementAndGet();
+            }
+        }
+
+        for (final Map.Entry<String, Boolean> entry : wanted.entrySet()) {
+            final String url = entry.getKey();
+            if (!fetched.contains(url) && !inFlight.containsKey(url)) {
+                fetch(url, entry.getValue());
+            }
+        }
+    }
+
+    private void fetch(@NonNull final String url, final boolean isAvatar) {
+        final Object tag = new Object();
+        inFlight.put(url, tag);
+        // same size and crop as VideoAdapter's fit().centerCrop(), so the cache keys match
+        (isAvatar ? PicassoHelper.loadAvatar(url) : PicassoHelper.loadThumbnail(url))
+                .resize(isAvatar ? avatarSize : thumbnailWidth,
+                        isAvatar ? avatarSize : thumbnailHeight)
+                .centerCrop()
+                .priority(Picasso.Priority.LOW)
+                .tag(tag)
+                .fetch(new Callback() {
+                    @Override
+                    public void onSuccess() {
+                        if (inFlight.remove(url) == tag) {
+                            remember(url);
+                        }
+                    }
+
+                    @Override
+                    public void onError(final Exception e) {
+                        inFlight.remove(url, tag);
+                    }
+                });
+    }
+
+    private void remember(@NonNull final String url) {
+        fetched.add(url);
+        final Iterator<String> iterator = fetched.iterator();
+        while (fetched.size() > MAX_REMEMBERED) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void countAttached(@NonNull final View view) {
+        if (recyclerView == null || items == null) {
+            return;
+        }
+        final int position = recyclerView.getChildAdapterPosition(view);
+        if (position == RecyclerView.NO_POSITION || position >= items.size()) {
+            return;
+        }
+
+        final StreamInfoItem item = items.get(position);
+        final String url =
+                item == null ? null : ImageStrategy.choosePreferredImage(item.getThumbnails());
+        if (url == null) {
+            return;
+        }
+        final String event;
+        if (fetched.contains(url)) {
+            event = "hit";
+        } else if (inFlight.containsKey(url)) {
+            event = "late";
+        } else {
+            event = "miss";
+        }
+        MetricsRegistry.getInstance().counter("image.prefetch." + event).incrementAndGet();
+    }
+}
@@ -99,7 +99,11 @@ public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHol
         }
 
         public void bind(StreamInfoItem videoItem, int position) {
-            if (videoItem == null) return;
+            if (videoItem == null) {
+                // e.g. not read from the feed store yet, the row is bound again once it is
+                bindPlaceholder();
+                return;
+            }
 
             // Set video title
             binding.txtTitle.setText(videoItem.getName());
@@ -121,6 +125,18 @@ public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHol
             setupClickListeners(videoItem, position);
         }
 
+        private void bindPlaceholder() {
+            PicassoHelper.cancelTag(this);
+            binding.txtTitle.setText(null);
+            binding.txtInfo.setText(null);
+            binding.txtDuration.setText(null);
+            binding.txtDuration.setBackground(null);
+            binding.imgThumb.setImageDrawable(null);
+            binding.imgAvatar.setImageDrawable(null);
+            binding.getRoot().setOnClickListener(null);
+            binding.btnMore.setOnClickListener(null);
+        }
+
         private void setDurationOrLiveStatus(StreamInfoItem videoItem) {
             if (isCurrentlyLive(videoItem)) {
                 binding.txtDuration.setBackgroundColor(Color.RED);
@@ -0,0 +1,203 @@
+package com.nidoham.skymate.download;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.os.Environment;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.nidoham.skymate.DownloaderImpl;
+import com.nidoham.skymate.network.HttpCore;
+
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+import org.schabi.newpipe.settings.YouTubeSettingsManager;
+import org.schabi.newpipe.util.InfoLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Entry point for downloading streams, honouring the download preferences of
+ * {@link YouTubeSettingsManager}: the stream is chosen according to the download quality, and
+ * downloads only run (and pause as soon as the device leaves Wi-Fi) if the Wi-Fi only preference
+ * is set.
+ */
+public final class DownloadManager {
+
+    private static OkHttpClient client;
+
+    private final Context context;
+    private final ConnectivityManager connectivityManager;
+    private final YouTubeSettingsManager settings;
+
+    public DownloadManager(@NonNull final Context context) {
+        this.context = context.getApplicationContext();
+        this.connectivityManager = context.getSystemService(ConnectivityManager.class);
+        this.settings = new YouTubeSettingsManager(context);
+    }
+
+    private static synchronized OkHttpClient getClient() {
+        if (client == null) {
+            client = HttpCore.newDownloadClientBuilder()
+                    .readTimeout(30, TimeUnit.SECONDS)
+                    .build();
+        }
+        return client;
+    }
+
+    /**
+     * @return the muxed video stream of the given stream closest to the download quality
+     *         preference without exceeding it (or the smallest one if all exceed it), or
+     *         {@code null} if there is no downloadable stream
+     */
+    @Nullable
+    public VideoStream selectStream(@NonNull final StreamInfo info) {
+        return selectStream(info.getVideoStreams(), heightOf(settings.getDownloadQuality()));
+    }
+
+    @Nullable
+    static VideoStream selectStream(@NonNull final List<VideoStream> streams,
+                                    final int maxHeight) {
+        VideoStream best = null;
+        VideoStream smallest = null;
+        for (final VideoStream stream : streams) {
+            if (stream.isVideoOnly() || !stream.isUrl()) {
+                continue; // video only streams would need muxing with an audio stream
+            }
+            final int height = heightOf(stream.getResolution());
+            if (smallest == null || height < heightOf(smallest.getResolution())) {
+                smallest = stream;
+            }
+            if (height <= maxHeight
+                    && (best == null || height > heightOf(best.getResolution()))) {
+                best = stream;
+            }
+        }
+        return best != null ? best : smallest;
+    }
+
+    /**
+     * @param resolution e.g. {@code 720p} or {@code 1080p60}
+     * @return the height in the resolution, or {@link Integer#MAX_VALUE} if there is none, as for
+     *         {@code Auto}
+     */
+    static int heightOf(@Nullable final String resolution) {
+        if (resolution == null) {
+            return Integer.MAX_VALUE;
+        }
+        final int end = resolution.indexOf('p');
+        try {
+            return Integer.parseInt(end > 0 ? resolution.substring(0, end) : resolution);
+        } catch (final NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return whether the download preferences allow downloading on the current network
+     */
+    public boolean isDownloadAllowed() {
+        if (!settings.isDownloadOverWiFiOnly()) {
+            return true;
+        }
+        final NetworkCapabilities capabilities = connectivityManager
+                .getNetworkCapabilities(connectivityManager.getActiveNetwork());
+        return capabilities != null
+                && (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)
+                || capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET));
+    }
+
+    /**
+     * Downloads the stream at the given URL into the app's movies directory, choosing the
+     * stream with {@link #selectStream(StreamInfo)}.
+     *
+     * @return a {@link Single} emitting the downloaded file, blocking the thread it is subscribed
+     *         on; see {@link #download(String, File, SegmentedDownload.Listener)} for pausing
+     */
+    @NonNull
+    public Single<File> downloadStream(final int serviceId, @NonNull final String url,
+                                       @Nullable final SegmentedDownload.Listener listener) {
+        return InfoLoader.getStreamInfo(serviceId, url, false).flatMap(info -> {
+            final VideoStream stream = selectStream(info);
+            final File directory = context.getExternalFilesDir(Environment.DIRECTORY_MOVIES);
+            if (stream == null) {
+                throw new IOException("No downloadable stream for " + url);
+            } else if (directory == null || (!directory.exists() && !directory.mkdirs())) {
+                throw new IOException("Shared storage is not available");
+            }
+            final File target = new File(directory, fileNameOf(info.getName()) + "."
+                    + (stream.getFormat() != null ? stream.getFormat().getSuffix() : "mp4"));
+            return download(stream.getContent(), target, listener).toSingleDefault(target);
+        });
+    }
+
+    @NonNull
+    static String fileNameOf(@NonNull final String title) {
+        final String name = title.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        return name.isEmpty() ? "video" : name.substring(0, Math.min(name.length(), 100));
+    }
+
+    /**
+     * Downloads the given URL into the target file, resuming a previous download of the same
+     * target if there is one. Disposing the returned {@link Completable} pauses the download.
+     *
+     * @param listener notified about the progress from download threads, may be {@code null}
+     * @return a {@link Completable} which fails with {@link SegmentedDownload.PausedException} if
+     *         the download was paused, blocking the thread it is subscribed on
+     */
+    @NonNull
+    public Completable download(@NonNull final String url, @NonNull final File target,
+                                @Nullable final SegmentedDownload.Listener listener) {
+        return Completable.create(emitter -> {
+            if (!isDownloadAllowed()) {
+                throw new SegmentedDownload.PausedException(
+                        "Downloads are only allowed over Wi-Fi");
+            }
+            final long totalBytes = getContentLength(url);
+            final SegmentedDownload download =
+                    new SegmentedDownload(getClient(), url, target, this::isDownloadAllowed);
+            emitter.setCancellable(download::cancel);
+            try {
+                download.run(totalBytes, listener);
+            } catch (final SegmentedDownload.PausedException e) {
+                // after disposal, the pause is what was asked for and no one is listening
+                if (!emitter.isDisposed()) {
+                    emitter.tryOnError(e);
+                }
+                return;
+            }
+            emitter.onComplete();
+        });
+    }
+
+    /**
+     * Asks for the size with a {@code HEAD} request on the download client, so that it goes to
+     * the same host over the same connection pool as the ranges that follow.
+     */
+    private static long getContentLength(@NonNull final String url) throws IOException {
+        final Request request = new Request.Builder()
+                .head()
+                .url(url)
+                .addHeader("User-Agent", DownloaderImpl.USER_AGENT)
+                .build();
+        try (Response response = getClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected response " + response.code() + " for " + url);
+            }
+            return Long.parseLong(response.header("Content-Length", ""));
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid content length", e);
+        }
+    }
+}
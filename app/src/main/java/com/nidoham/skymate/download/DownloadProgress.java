@@ -0,0 +1,139 @@
+package com.nidoham.skymate.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Which bytes of a {@link SegmentedDownload} are already on disk.
+ * <br>
+ * The file is split into fixed-size chunks; for each chunk the number of bytes downloaded from
+ * its start is tracked. This state is saved next to the target file, so that a download can
+ * continue where it stopped, even after the process died.
+ */
+final class DownloadProgress {
+
+    private static final int MAGIC = 0x534b4450; // "SKDP"
+    private static final int VERSION = 1;
+
+    final long totalBytes;
+    final long chunkSize;
+    private final long[] done;
+    private final boolean[] claimed;
+
+    DownloadProgress(final long totalBytes, final long chunkSize) {
+        this(totalBytes, chunkSize, new long[(int) ((totalBytes + chunkSize - 1) / chunkSize)]);
+    }
+
+    private DownloadProgress(final long totalBytes, final long chunkSize, final long[] done) {
+        this.totalBytes = totalBytes;
+        this.chunkSize = chunkSize;
+        this.done = done;
+        this.claimed = new boolean[done.length];
+    }
+
+    long chunkStart(final int chunk) {
+        return chunk * chunkSize;
+    }
+
+    long chunkEnd(final int chunk) {
+        return Math.min(totalBytes, (chunk + 1) * chunkSize);
+    }
+
+    /**
+     * @return the index of an unfinished chunk no one works on yet, now claimed by the caller,
+     *         or -1 if there is none
+     */
+    synchronized int claimNextChunk() {
+        for (int i = 0; i < done.length; i++) {
+            if (!claimed[i] && chunkStart(i) + done[i] < chunkEnd(i)) {
+                claimed[i] = true;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    synchronized long downloadedInChunk(final int chunk) {
+        return done[chunk];
+    }
+
+    synchronized void advance(final int chunk, final long bytes) {
+        done[chunk] += bytes;
+    }
+
+    synchronized long getDownloadedBytes() {
+        long sum = 0;
+        for (final long d : done) {
+            sum += d;
+        }
+        return sum;
+    }
+
+    boolean isComplete() {
+        return getDownloadedBytes() >= totalBytes;
+    }
+
+    /**
+     * Only call this after the bytes counted so far were flushed to the target file, otherwise a
+     * resumed download would skip data which never reached the disk.
+     */
+    void save(@NonNull final File file) throws IOException {
+        final long[] snapshot;
+        synchronized (this) {
+            snapshot = done.clone();
+        }
+
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(totalBytes);
+            out.writeLong(chunkSize);
+            out.writeInt(snapshot.length);
+            for (final long d : snapshot) {
+                out.writeLong(d);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * @return the saved progress, or {@code null} if there is none for a file of this size
+     */
+    @Nullable
+    static DownloadProgress load(@NonNull final File file, final long totalBytes,
+                                 final long chunkSize) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != totalBytes || in.readLong() != chunkSize) {
+                return null;
+            }
+            final long[] done = new long[in.readInt()];
+            if (done.length != (totalBytes + chunkSize - 1) / chunkSize) {
+                return null;
+            }
+            for (int i = 0; i < done.length; i++) {
+                done[i] = in.readLong();
+            }
+            return new DownloadProgress(totalBytes, chunkSize, done);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.nidoham.skymate.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.nidoham.skymate.DownloaderImpl;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Downloads one file over several connections at once, each fetching a different HTTP range,
+ * so that a single download is not limited by the throughput of one TCP connection.
+ * <br>
+ * Ranges are written straight to their place in the target file with positional
+ * {@link FileChannel} writes. Progress is saved in a {@code .parts} file next to the target and
+ * a new instance for the same target continues where the previous one stopped, even if the URL
+ * changed in between (stream URLs expire), as long as the file size is the same.
+ */
+public final class SegmentedDownload {
+
+    public interface Listener {
+        /**
+         * Called from download threads, at most once per {@link #SAVE_INTERVAL_BYTES}.
+         */
+        void onProgress(long downloadedBytes, long totalBytes);
+    }
+
+    public interface NetworkPolicy {
+        boolean isDownloadAllowed();
+    }
+
+    /**
+     * Thrown when a download stops before completion because it was cancelled or the network
+     * became unsuitable. Its progress is saved, so it can be resumed later.
+     */
+    public static final class PausedException extends IOException {
+        public PausedException(final String message) {
+            super(message);
+        }
+    }
+
+    static final String PROGRESS_SUFFIX = ".parts";
+
+    private static final long DEFAULT_CHUNK_SIZE = 8L * 1024L * 1024L;
+    private static final long SAVE_INTERVAL_BYTES = 1024L * 1024L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_CONNECTIONS = 4;
+
+    private final OkHttpClient client;
+    private final String url;
+    private final File target;
+    private final File progressFile;
+    private final NetworkPolicy networkPolicy;
+    private final int connections;
+    private final long chunkSize;
+
+    private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+    private final AtomicLong unsavedBytes = new AtomicLong();
+    private volatile boolean cancelled;
+    private volatile boolean stopped;
+
+    public SegmentedDownload(@NonNull final OkHttpClient client, @NonNull final String url,
+                             @NonNull final File target,
+                             @NonNull final NetworkPolicy networkPolicy) {
+        this(client, url, target, networkPolicy, DEFAULT_CONNECTIONS);
+    }
+
+    public SegmentedDownload(@NonNull final OkHttpClient client, @NonNull final String url,
+                             @NonNull final File target,
+                             @NonNull final NetworkPolicy networkPolicy,
+                             final int connections) {
+        this(client, url, target, networkPolicy, connections, DEFAULT_CHUNK_SIZE);
+    }
+
+    @VisibleForTesting
+    SegmentedDownload(@NonNull final OkHttpClient client, @NonNull final String url,
+                      @NonNull final File target, @NonNull final NetworkPolicy networkPolicy,
+                      final int connections, final long chunkSize) {
+        this.client = client;
+        this.url = url;
+        this.target = target;
+        this.progressFile = new File(target.getPath() + PROGRESS_SUFFIX);
+        this.networkPolicy = networkPolicy;
+        this.connections = Math.max(1, connections);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Downloads the file, blocking until it is complete.
+     *
+     * @param totalBytes the size of the file, e.g. from a {@code HEAD} request
+     * @param listener   notified about the progress, may be {@code null}
+     * @throws PausedException if the download was stopped before completion
+     */
+    public void run(final long totalBytes, @Nullable final Listener listener) throws IOException {
+        DownloadProgress progress = target.exists()
+                ? DownloadProgress.load(progressFile, totalBytes, chunkSize) : null;
+        if (progress == null) {
+            if (target.exists() && !progressFile.exists() && target.length() == totalBytes) {
+                return; // already downloaded
+            }
+            progress = new DownloadProgress(totalBytes, chunkSize);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            file.setLength(totalBytes);
+            final FileChannel channel = file.getChannel();
+            progress.save(progressFile);
+            runWorkers(progress, channel, listener);
+
+            channel.force(true);
+        }
+        if (!progressFile.delete()) {
+            throw new IOException("Could not delete " + progressFile);
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        stopCalls();
+    }
+
+    private void stopCalls() {
+        stopped = true;
+        for (final Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    private void runWorkers(final DownloadProgress progress, final FileChannel channel,
+                            @Nullable final Listener listener) throws IOException {
+        final int workerCount = (int) Math.min(connections,
+                (progress.totalBytes + chunkSize - 1) / chunkSize);
+        final ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, workerCount));
+        final Future<?>[] futures = new Future<?>[Math.max(1, workerCount)];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = workers.submit(() -> {
+                int chunk;
+                while ((chunk = progress.claimNextChunk()) != -1) {
+                    downloadChunk(progress, chunk, channel, listener);
+                }
+                return null;
+            });
+        }
+        workers.shutdown();
+
+        IOException failure = null;
+        for (final Future<?> future : futures) {
+            Throwable error = null;
+            try {
+                future.get();
+            } catch (final ExecutionException e) {
+                error = e.getCause();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e;
+            }
+            if (error != null && failure == null) {
+                failure = error instanceof IOException ? (IOException) error
+                        : new IOException(error);
+                stopCalls(); // the progress of all workers is saved below, stop the others too
+            }
+        }
+
+        channel.force(false);
+        progress.save(progressFile);
+        if (failure != null) {
+            throw cancelled && !(failure instanceof PausedException)
+                    ? new PausedException("Download of " + target.getName() + " stopped")
+                    : failure;
+        } else if (!progress.isComplete()) {
+            // the target would keep its preallocated length with holes of zeros
+            throw new IOException("Download of " + target.getName() + " ended with "
+                    + progress.getDownloadedBytes() + " of " + progress.totalBytes + " bytes");
+        }
+        if (listener != null) {
+            listener.onProgress(progress.totalBytes, progress.totalBytes);
+        }
+    }
+
+    private void downloadChunk(final DownloadProgress progress, final int chunk,
+                               final FileChannel channel, @Nullable final Listener listener)
+            throws IOException {
+        long position = progress.chunkStart(chunk) + progress.downloadedInChunk(chunk);
+        final long end = progress.chunkEnd(chunk); // exclusive
+        if (position >= end) {
+            return;
+        }
+        checkAllowed();
+
+        final Request request = new Request.Builder()
+                .url(url)
+                .addHeader("User-Agent", DownloaderImpl.USER_AGENT)
+                .addHeader("Range", "bytes=" + position + "-" + (end - 1))
+                .build();
+        final Call call = client.newCall(request);
+        calls.add(call);
+        try (Response response = call.execute()) {
+            final boolean wholeFile = response.code() == 200
+                    && position == 0 && end == progress.totalBytes;
+            if (response.code() != 206 && !wholeFile) {
+                throw new IOException("Unexpected response " + response.code()
+                        + " for range " + position + "-" + (end - 1));
+            }
+
+            final ResponseBody body = response.body();
+            if (body == null) {
+                throw new IOException("Empty response for range " + position + "-" + (end - 1));
+            }
+            final InputStream in = body.byteStream();
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (position < end) {
+                final int read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+                if (read == -1) {
+                    throw new EOFException("Connection closed at " + position + " of " + end);
+                }
+
+                final ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                long writePosition = position;
+                while (data.hasRemaining()) {
+                    writePosition += channel.write(data, writePosition);
+                }
+                position += read;
+                progress.advance(chunk, read);
+
+                if (unsavedBytes.addAndGet(read) >= SAVE_INTERVAL_BYTES) {
+                    unsavedBytes.set(0);
+                    saveProgress(progress, channel, listener);
+                    checkAllowed();
+                }
+            }
+        } finally {
+            calls.remove(call);
+        }
+    }
+
+    private synchronized void saveProgress(final DownloadProgress progress,
+                                           final FileChannel channel,
+                                           @Nullable final Listener listener) throws IOException {
+        channel.force(false);
+        progress.save(progressFile);
+        if (listener != null) {
+            listener.onProgress(progress.getDownloadedBytes(), progress.totalBytes);
+        }
+    }
+
+    private void checkAllowed() throws PausedException {
+        if (cancelled || stopped) {
+            throw new PausedException("Download of " + target.getName() + " cancelled");
+        }
+        if (!networkPolicy.isDownloadAllowed()) {
+            throw new PausedException("Download of " + target.getName()
+                    + " not allowed on the current network");
+        }
+    }
+}
@@ -35,6 +35,7 @@ public class ReCaptchaActivity extends AppCompatActivity {
 
     private ActivityRecaptchaBinding recaptchaBinding;
     private String foundCookies = "";
+    private boolean resultReported;
 
     /**
      * Removes the pbj=1 param which causes YouTube to respond with JSON instead of HTML.
@@ -86,6 +87,15 @@ public class ReCaptchaActivity extends AppCompatActivity {
         saveCookiesAndFinish();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (isFinishing() && !resultReported) {
+            // left without going back, e.g. through the recent apps: release the held requests
+            DownloaderImpl.getInstance().onReCaptchaResult(false);
+        }
+    }
+
     /**
      * Save collected cookies into preferences and apply them to DownloaderImpl.
      */
@@ -100,6 +110,9 @@ public class ReCaptchaActivity extends AppCompatActivity {
             DownloaderImpl.getInstance().setCookie(RECAPTCHA_COOKIES_KEY, foundCookies);
             setResult(RESULT_OK);
         }
+        // release the requests which were held back while the challenge was pending
+        DownloaderImpl.getInstance().onReCaptchaResult(!foundCookies.isEmpty());
+        resultReported = true;
 
         recaptchaBinding.reCaptchaWebView.loadUrl("about:blank");
         finish();
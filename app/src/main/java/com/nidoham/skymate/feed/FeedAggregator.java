@@ -0,0 +1,271 @@
+package com.nidoham.skymate.feed;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+import com.nidoham.skymate.util.LoadScheduler;
+
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.channel.ChannelInfo;
+import org.schabi.newpipe.extractor.channel.tabs.ChannelTabs;
+import org.schabi.newpipe.extractor.linkhandler.ListLinkHandler;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.util.ExtractorHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+
+/**
+ * Builds the subscription feed: the latest videos of all subscribed channels, newest first.
+ * <br>
+ * Channels are loaded in parallel in the {@link LoadScheduler.Priority#FAN_OUT} class, whose
+ * slots are not shared with the rest of the page, so that refreshing takes about as long as the
+ * number of subscriptions divided by those slots, rather than their sum. A channel which does
+ * not load within {@link #DEFAULT_CHANNEL_DEADLINE_MILLIS} of getting a slot is skipped and
+ * its load interrupted, so a single slow one can neither hold back the feed nor keep its slot.
+ * Since the video list of each channel
+ * is already sorted, the feed is a k-way merge of those lists, which is recomputed and published
+ * every time a channel completes, so the feed fills up while loading.
+ */
+public final class FeedAggregator {
+
+    public static final long DEFAULT_CHANNEL_DEADLINE_MILLIS = 20_000;
+    /** The feed is cut off after this many items, which also bounds the cost of each merge. */
+    public static final int MAX_ITEMS = 500;
+    private static final long PUBLISH_INTERVAL_MILLIS = 250;
+
+    /**
+     * The feed after some of the channels completed.
+     */
+    public static final class FeedResult {
+        @NonNull
+        private final List<StreamInfoItem> items;
+        private final int completedChannels;
+        private final int failedChannels;
+        private final int totalChannels;
+
+        FeedResult(@NonNull final List<StreamInfoItem> items, final int completedChannels,
+                   final int failedChannels, final int totalChannels) {
+            this.items = items;
+            this.completedChannels = completedChannels;
+            this.failedChannels = failedChannels;
+            this.totalChannels = totalChannels;
+        }
+
+        /**
+         * @return the merged items of the completed channels, newest first
+         */
+        @NonNull
+        public List<StreamInfoItem> getItems() {
+            return items;
+        }
+
+        /**
+         * @return the number of channels which loaded or failed to
+         */
+        public int getCompletedChannels() {
+            return completedChannels;
+        }
+
+        /**
+         * @return the number of channels which failed to load or missed their deadline
+         */
+        public int getFailedChannels() {
+            return failedChannels;
+        }
+
+        public int getTotalChannels() {
+            return totalChannels;
+        }
+
+        public boolean isComplete() {
+            return completedChannels == totalChannels;
+        }
+    }
+
+    /**
+     * The videos of one channel, newest first, with their upload times resolved once.
+     */
+    static final class ChannelFeed {
+        final List<StreamInfoItem> items = new ArrayList<>();
+        final long[] uploadTimes;
+
+        ChannelFeed(@NonNull final List<InfoItem> relatedItems) {
+            for (final InfoItem item : relatedItems) {
+                if (item instanceof StreamInfoItem) {
+                    items.add((StreamInfoItem) item);
+                }
+            }
+            // usually sorted already, apart from e.g. pinned videos
+            items.sort(Comparator.comparingLong(FeedAggregator::uploadTimeOf).reversed());
+            uploadTimes = new long[items.size()];
+            for (int i = 0; i < uploadTimes.length; i++) {
+                uploadTimes[i] = uploadTimeOf(items.get(i));
+            }
+        }
+    }
+
+    private static final class Cursor {
+        final ChannelFeed feed;
+        int position;
+
+        Cursor(@NonNull final ChannelFeed feed) {
+            this.feed = feed;
+        }
+
+        long uploadTime() {
+            return feed.uploadTimes[position];
+        }
+    }
+
+    @Nullable
+    private final Object owner;
+    private final long channelDeadlineMillis;
+
+    /**
+     * @param owner passed to {@link LoadScheduler#scheduler(Object, LoadScheduler.Priority)}
+     */
+    public FeedAggregator(@Nullable final Object owner) {
+        this(owner, DEFAULT_CHANNEL_DEADLINE_MILLIS);
+    }
+
+    public FeedAggregator(@Nullable final Object owner, final long channelDeadlineMillis) {
+        this.owner = owner;
+        this.channelDeadlineMillis = channelDeadlineMillis;
+    }
+
+    /**
+     * @param subscriptions the channels to load
+     * @param forceLoad     whether to bypass the cached channel infos
+     * @return the growing feed, at most every {@link #PUBLISH_INTERVAL_MILLIS} while channels
+     *         complete, and always once all of them did; never fails
+     */
+    @NonNull
+    public Observable<FeedResult> load(
+            @NonNull final List<SubscriptionManager.Subscription> subscriptions,
+            final boolean forceLoad) {
+        final int total = subscriptions.size();
+        if (total == 0) {
+            return Observable.just(new FeedResult(Collections.emptyList(), 0, 0, 0));
+        }
+
+        return Observable.defer(() -> {
+            // only touched from flatMap's output, which is serialized
+            final List<ChannelFeed> feeds = new ArrayList<>();
+            final int[] failed = {0};
+
+            return Observable.fromIterable(subscriptions)
+                    // the LoadScheduler bounds how many of them run at once
+                    .flatMapSingle(subscription -> loadChannel(subscription, forceLoad))
+                    .map(feed -> {
+                        if (feed.isPresent()) {
+                            feeds.add(feed.get());
+                        } else {
+                            failed[0]++;
+                        }
+                        return new FeedResult(merge(feeds, MAX_ITEMS),
+                                feeds.size() + failed[0], failed[0], total);
+                    })
+                    .throttleLatest(PUBLISH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, true);
+        });
+    }
+
+    /**
+     * @return the channel's videos, or nothing if the channel failed to load in time
+     */
+    @NonNull
+    private Single<Optional<ChannelFeed>> loadChannel(
+            @NonNull final SubscriptionManager.Subscription subscription,
+            final boolean forceLoad) {
+        final int serviceId = subscription.getServiceId();
+        return Single.defer(() -> {
+            // the deadline only starts once a slot is granted, but is applied outside of the
+            // scheduler, so that missing it disposes, and thereby interrupts, the running load
+            final CompletableSubject started = CompletableSubject.create();
+            return Single.defer(() -> {
+                started.onComplete();
+                final long startMillis = SystemClock.uptimeMillis();
+                return ExtractorHelper.getChannelInfo(serviceId, subscription.getUrl(), forceLoad)
+                        .flatMap(info -> loadVideosTab(serviceId, info, forceLoad))
+                        .map(relatedItems -> Optional.of(new ChannelFeed(relatedItems)))
+                        .doOnSuccess(feed -> MetricsRegistry.getInstance()
+                                .histogram("feed.channel.load")
+                                .record(SystemClock.uptimeMillis() - startMillis));
+            })
+                    .subscribeOn(LoadScheduler.getInstance()
+                            .scheduler(owner, LoadScheduler.Priority.FAN_OUT))
+                    .takeUntil(started.andThen(
+                            Completable.timer(channelDeadlineMillis, TimeUnit.MILLISECONDS)));
+        })
+                .onErrorReturn(throwable -> {
+                    MetricsRegistry.getInstance().counter("feed.channel.failed")
+                            .incrementAndGet();
+                    return Optional.empty();
+                });
+    }
+
+    @NonNull
+    private static Single<List<InfoItem>> loadVideosTab(final int serviceId,
+                                                        @NonNull final ChannelInfo info,
+                                                        final boolean forceLoad) {
+        for (final ListLinkHandler tab : info.getTabs()) {
+            if (tab.getContentFilters().contains(ChannelTabs.VIDEOS)) {
+                return ExtractorHelper.getChannelTab(serviceId, tab, forceLoad)
+                        .map(tabInfo -> tabInfo.getRelatedItems());
+            }
+        }
+        return Single.just(Collections.emptyList());
+    }
+
+    /**
+     * Merges the channels' lists, each sorted newest first, with a priority queue holding the
+     * next item of each list, in O(limit * log(number of lists)).
+     */
+    @VisibleForTesting
+    @NonNull
+    static List<StreamInfoItem> merge(@NonNull final List<ChannelFeed> feeds,
+                                              final int limit) {
+        final PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, feeds.size()),
+                (a, b) -> Long.compare(b.uploadTime(), a.uploadTime()));
+        for (final ChannelFeed feed : feeds) {
+            if (!feed.items.isEmpty()) {
+                queue.add(new Cursor(feed));
+            }
+        }
+
+        final List<StreamInfoItem> merged = new ArrayList<>();
+        while (!queue.isEmpty() && merged.size() < limit) {
+            final Cursor cursor = queue.poll();
+            merged.add(cursor.feed.items.get(cursor.position));
+            cursor.position++;
+            if (cursor.position < cursor.feed.items.size()) {
+                queue.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the upload time in milliseconds, or {@link Long#MIN_VALUE} if it is unknown, so
+     *         that such items come last
+     */
+    private static long uploadTimeOf(@NonNull final StreamInfoItem item) {
+        return item.getUploadDate() == null
+                ? Long.MIN_VALUE
+                : item.getUploadDate().offsetDateTime().toInstant().toEpochMilli();
+    }
+}
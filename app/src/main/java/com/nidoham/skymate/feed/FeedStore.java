@@ -0,0 +1,287 @@
+package com.nidoham.skymate.feed;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import org.schabi.newpipe.extractor.localization.DateWrapper;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.util.image.ImageStrategy;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the items of feeds in an app-private SQLite database, so that they survive restarts and
+ * can be read back page by page instead of being held in memory all at once.
+ * <br>
+ * Each feed is a source, e.g. a kiosk, whose items are ordered by their position in it. Only the
+ * fields the feed list shows are stored, with a single image URL per image list as chosen by
+ * {@link ImageStrategy#imageListToDbUrl(List)}.
+ * <br>
+ * Reloading a source starts a new generation: its items are upserted with the new generation,
+ * and the items which were not seen again are deleted once the first page was stored. Reads
+ * are tied to a generation, see {@link Snapshot}, so that pages read after a reload never mix
+ * items of both generations. All methods but {@link #getInstance} do disk I/O and must not be
+ * called on the main thread.
+ */
+public final class FeedStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "feed.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE = "feed_items";
+    private static final String SOURCE = "source";
+    private static final String GENERATION = "generation";
+    private static final String POSITION = "position";
+    private static final String SERVICE_ID = "service_id";
+    private static final String URL = "url";
+    private static final String STREAM_TYPE = "stream_type";
+    private static final String TITLE = "title";
+    private static final String DURATION = "duration";
+    private static final String VIEW_COUNT = "view_count";
+    private static final String UPLOAD_DATE = "upload_date";
+    private static final String UPLOAD_DATE_APPROXIMATE = "upload_date_approximate";
+    private static final String TEXTUAL_UPLOAD_DATE = "textual_upload_date";
+    private static final String UPLOADER_NAME = "uploader_name";
+    private static final String UPLOADER_URL = "uploader_url";
+    private static final String THUMBNAIL_URL = "thumbnail_url";
+    private static final String UPLOADER_AVATAR_URL = "uploader_avatar_url";
+
+    private static final String[] ITEM_COLUMNS = {SERVICE_ID, URL, STREAM_TYPE, TITLE, DURATION,
+            VIEW_COUNT, UPLOAD_DATE, UPLOAD_DATE_APPROXIMATE, TEXTUAL_UPLOAD_DATE, UPLOADER_NAME,
+            UPLOADER_URL, THUMBNAIL_URL, UPLOADER_AVATAR_URL};
+
+    private static FeedStore instance;
+
+    /**
+     * The state of a source at one point in time. Its further pages are read with
+     * {@link #query(String, long, int, int)}, which finds nothing once a newer generation
+     * replaced this one.
+     */
+    public static final class Snapshot {
+        public final long generation;
+        public final int size;
+        @NonNull
+        public final List<StreamInfoItem> firstPage;
+
+        Snapshot(final long generation, final int size,
+                 @NonNull final List<StreamInfoItem> firstPage) {
+            this.generation = generation;
+            this.size = size;
+            this.firstPage = firstPage;
+        }
+    }
+
+    @VisibleForTesting
+    FeedStore(@NonNull final Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized FeedStore getInstance(@NonNull final Context context) {
+        if (instance == null) {
+            instance = new FeedStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(final SQLiteDatabase db) {
+        // the url identifies the video, so it is unique within a source
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + SOURCE + " TEXT NOT NULL, "
+                + GENERATION + " INTEGER NOT NULL, "
+                + POSITION + " INTEGER NOT NULL, "
+                + SERVICE_ID + " INTEGER NOT NULL, "
+                + URL + " TEXT NOT NULL, "
+                + STREAM_TYPE + " TEXT NOT NULL, "
+                + TITLE + " TEXT, "
+                + DURATION + " INTEGER NOT NULL, "
+                + VIEW_COUNT + " INTEGER NOT NULL, "
+                + UPLOAD_DATE + " INTEGER, "
+                + UPLOAD_DATE_APPROXIMATE + " INTEGER NOT NULL, "
+                + TEXTUAL_UPLOAD_DATE + " TEXT, "
+                + UPLOADER_NAME + " TEXT, "
+                + UPLOADER_URL + " TEXT, "
+                + THUMBNAIL_URL + " TEXT, "
+                + UPLOADER_AVATAR_URL + " TEXT, "
+                + "PRIMARY KEY (" + SOURCE + ", " + URL + "))");
+        db.execSQL("CREATE INDEX index_" + TABLE + "_position ON " + TABLE
+                + " (" + SOURCE + ", " + POSITION + ")");
+        db.execSQL("CREATE INDEX index_" + TABLE + "_upload_date ON " + TABLE
+                + " (" + SOURCE + ", " + UPLOAD_DATE + ")");
+        db.execSQL("CREATE INDEX index_" + TABLE + "_url ON " + TABLE + " (" + URL + ")");
+    }
+
+    @Override
+    public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+        // only a cache of what services return, so it can just be rebuilt
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    /**
+     * Stores the first page of a source, replacing its previous items.
+     */
+    public void putFirstPage(@NonNull final String source,
+                             @NonNull final List<StreamInfoItem> items) {
+        final SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            final long generation = currentGeneration(db, source) + 1;
+            // a video already stored moves to its new position
+            upsert(db, source, generation, 0, items, SQLiteDatabase.CONFLICT_REPLACE);
+            db.delete(TABLE, SOURCE + " = ? AND " + GENERATION + " < ?",
+                    new String[]{source, String.valueOf(generation)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Stores a further page of a source after the items already stored.
+     */
+    public void appendPage(@NonNull final String source,
+                           @NonNull final List<StreamInfoItem> items) {
+        final SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            final long nextPosition = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX("
+                    + POSITION + ") + 1, 0) FROM " + TABLE + " WHERE " + SOURCE + " = ?",
+                    new String[]{source});
+            // videos repeated from an earlier page keep their first position
+            upsert(db, source, currentGeneration(db, source), nextPosition, items,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param firstPageSize how many items to read along with the size
+     * @return the current generation of the source, its size and its first items
+     */
+    @NonNull
+    public Snapshot snapshot(@NonNull final String source, final int firstPageSize) {
+        final SQLiteDatabase db = getReadableDatabase();
+        db.beginTransaction(); // so that no write happens between the reads
+        try {
+            final long generation = currentGeneration(db, source);
+            final int size = (int) DatabaseUtils.queryNumEntries(db, TABLE,
+                    SOURCE + " = ? AND " + GENERATION + " = ?",
+                    new String[]{source, String.valueOf(generation)});
+            final List<StreamInfoItem> firstPage =
+                    query(db, source, generation, 0, firstPageSize);
+            db.setTransactionSuccessful();
+            return new Snapshot(generation, size, firstPage);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return up to {@code limit} items of the given generation of the source, in order,
+     *         starting at the {@code offset}-th one (positions can have gaps, so this is not a
+     *         position); fewer or none if a newer generation replaced it
+     */
+    @NonNull
+    public List<StreamInfoItem> query(@NonNull final String source, final long generation,
+                                      final int offset, final int limit) {
+        return query(getReadableDatabase(), source, generation, offset, limit);
+    }
+
+    @NonNull
+    private static List<StreamInfoItem> query(@NonNull final SQLiteDatabase db,
+                                              @NonNull final String source,
+                                              final long generation, final int offset,
+                                              final int limit) {
+        final List<StreamInfoItem> items = new ArrayList<>(limit);
+        try (Cursor cursor = db.query(TABLE, ITEM_COLUMNS,
+                SOURCE + " = ? AND " + GENERATION + " = ?",
+                new String[]{source, String.valueOf(generation)}, null, null, POSITION,
+                offset + "," + limit)) {
+            while (cursor.moveToNext()) {
+                items.add(itemAt(cursor));
+            }
+        }
+        return items;
+    }
+
+    private static long currentGeneration(@NonNull final SQLiteDatabase db,
+                                          @NonNull final String source) {
+        return DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + GENERATION + "), 0) FROM "
+                + TABLE + " WHERE " + SOURCE + " = ?", new String[]{source});
+    }
+
+    private static void upsert(@NonNull final SQLiteDatabase db, @NonNull final String source,
+                               final long generation, final long firstPosition,
+                               @NonNull final List<StreamInfoItem> items,
+                               final int conflictAlgorithm) {
+        final ContentValues values = new ContentValues();
+        long position = firstPosition;
+        for (final StreamInfoItem item : items) {
+            values.clear();
+            values.put(SOURCE, source);
+            values.put(GENERATION, generation);
+            values.put(POSITION, position++);
+            values.put(SERVICE_ID, item.getServiceId());
+            values.put(URL, item.getUrl());
+            values.put(STREAM_TYPE, item.getStreamType().name());
+            values.put(TITLE, item.getName());
+            values.put(DURATION, item.getDuration());
+            values.put(VIEW_COUNT, item.getViewCount());
+            final DateWrapper uploadDate = item.getUploadDate();
+            if (uploadDate == null) {
+                values.putNull(UPLOAD_DATE);
+            } else {
+                values.put(UPLOAD_DATE, uploadDate.offsetDateTime().toInstant().toEpochMilli());
+            }
+            values.put(UPLOAD_DATE_APPROXIMATE,
+                    uploadDate != null && uploadDate.isApproximation() ? 1 : 0);
+            values.put(TEXTUAL_UPLOAD_DATE, item.getTextualUploadDate());
+            values.put(UPLOADER_NAME, item.getUploaderName());
+            values.put(UPLOADER_URL, item.getUploaderUrl());
+            values.put(THUMBNAIL_URL, ImageStrategy.imageListToDbUrl(item.getThumbnails()));
+            values.put(UPLOADER_AVATAR_URL,
+                    ImageStrategy.imageListToDbUrl(item.getUploaderAvatars()));
+            db.insertWithOnConflict(TABLE, null, values, conflictAlgorithm);
+        }
+    }
+
+    @NonNull
+    private static StreamInfoItem itemAt(@NonNull final Cursor cursor) {
+        final StreamInfoItem item = new StreamInfoItem(cursor.getInt(0), cursor.getString(1),
+                cursor.getString(3), StreamType.valueOf(cursor.getString(2)));
+        item.setDuration(cursor.getLong(4));
+        item.setViewCount(cursor.getLong(5));
+        if (!cursor.isNull(6)) {
+            item.setUploadDate(new DateWrapper(OffsetDateTime.ofInstant(
+                    Instant.ofEpochMilli(cursor.getLong(6)), ZoneOffset.UTC),
+                    cursor.getInt(7) != 0));
+        }
+        item.setTextualUploadDate(cursor.getString(8));
+        item.setUploaderName(cursor.getString(9));
+        item.setUploaderUrl(cursor.getString(10));
+        item.setThumbnails(ImageStrategy.dbUrlToImageList(nullableString(cursor, 11)));
+        item.setUploaderAvatars(ImageStrategy.dbUrlToImageList(nullableString(cursor, 12)));
+        return item;
+    }
+
+    @Nullable
+    private static String nullableString(@NonNull final Cursor cursor, final int column) {
+        return cursor.isNull(column) ? null : cursor.getString(column);
+    }
+}
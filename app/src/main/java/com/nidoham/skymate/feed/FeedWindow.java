@@ -0,0 +1,195 @@
+package com.nidoham.skymate.feed;
+
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+/**
+ * A read-only list of the items of a {@link FeedStore} source, which only keeps the pages around
+ * the recently accessed items in memory, so that an adapter can show a feed of any length with
+ * constant memory use.
+ * <br>
+ * Nothing is read on the main thread: {@link #refresh()} reads a {@link FeedStore.Snapshot} of
+ * the source in the background and publishes its size and first page at once on the main
+ * thread. Other pages are read in the background on first access, together with the pages next
+ * to it; until they are read, {@link #get(int)} returns {@code null} for their items, as it does
+ * for items the source no longer has since a newer generation replaced the snapshot. The
+ * {@link Listener} is told when to notify the adapter.
+ * <br>
+ * Since the store does not notify about changes, {@link #refresh()} must be called after writing
+ * to the source.
+ */
+@MainThread
+public final class FeedWindow extends AbstractList<StreamInfoItem> {
+
+    private static final String TAG = FeedWindow.class.getSimpleName();
+
+    public interface Listener {
+        /**
+         * A new snapshot was published.
+         *
+         * @param appended whether it only added items after the {@code oldSize} previous ones,
+         *                 which are unchanged, rather than replacing all of them
+         */
+        void onRefreshed(int oldSize, int newSize, boolean appended);
+
+        /**
+         * Items for which {@link #get(int)} returned {@code null} were read.
+         */
+        void onItemsLoaded(int start, int count);
+    }
+
+    static final int PAGE_SIZE = 30;
+    // enough for the items on screen and both neighbouring pages while scrolling
+    private static final int MAX_PAGES = 4;
+
+    @NonNull
+    private final FeedStore store;
+    @NonNull
+    private final String source;
+    @NonNull
+    private final Scheduler scheduler;
+    @NonNull
+    private final Listener listener;
+
+    private final LruCache<Integer, List<StreamInfoItem>> pages = new LruCache<>(MAX_PAGES);
+    private final Map<Integer, Disposable> loadingPages = new HashMap<>();
+    @Nullable
+    private Disposable refreshing;
+
+    private long generation = -1;
+    private int size;
+
+    /**
+     * Initially empty, until {@link #refresh()} is called.
+     *
+     * @param scheduler the scheduler to read from the store on
+     */
+    public FeedWindow(@NonNull final FeedStore store, @NonNull final String source,
+                      @NonNull final Scheduler scheduler, @NonNull final Listener listener) {
+        this.store = store;
+        this.source = source;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Re-reads the source in the background and publishes it, replacing any refresh still
+     * running.
+     */
+    public void refresh() {
+        if (refreshing != null) {
+            refreshing.dispose();
+        }
+        refreshing = Single.fromCallable(() -> store.snapshot(source, PAGE_SIZE))
+                .subscribeOn(scheduler)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::publish,
+                        throwable -> Log.w(TAG, "Could not read " + source, throwable));
+    }
+
+    /**
+     * Cancels all reads, e.g. once the list is no longer shown.
+     */
+    public void dispose() {
+        if (refreshing != null) {
+            refreshing.dispose();
+            refreshing = null;
+        }
+        cancelPageLoads();
+    }
+
+    private void publish(@NonNull final FeedStore.Snapshot snapshot) {
+        final int oldSize = size;
+        final boolean appended = snapshot.generation == generation && snapshot.size >= oldSize;
+        cancelPageLoads(); // they read what was published before
+        if (appended) {
+            // a page read when the source was shorter misses the new items
+            for (final Map.Entry<Integer, List<StreamInfoItem>> entry
+                    : pages.snapshot().entrySet()) {
+                if (entry.getValue().size() < PAGE_SIZE) {
+                    pages.remove(entry.getKey());
+                }
+            }
+        } else {
+            pages.evictAll();
+        }
+
+        generation = snapshot.generation;
+        size = snapshot.size;
+        pages.put(0, snapshot.firstPage);
+        listener.onRefreshed(oldSize, size, appended);
+    }
+
+    /**
+     * @return the item, or {@code null} if it was not read yet or is no longer stored, or if the
+     *         index is out of range
+     */
+    @Override
+    @Nullable
+    public StreamInfoItem get(final int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+
+        final int pageIndex = index / PAGE_SIZE;
+        final int offset = index % PAGE_SIZE;
+        // read the neighbouring page in the direction the list is probably scrolling to
+        loadPage(offset < PAGE_SIZE / 2 ? pageIndex - 1 : pageIndex + 1);
+        final List<StreamInfoItem> page = pages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void loadPage(final int pageIndex) {
+        final int start = pageIndex * PAGE_SIZE;
+        if (pageIndex < 0 || start >= size || loadingPages.containsKey(pageIndex)
+                || pages.snapshot().containsKey(pageIndex)) {
+            return;
+        }
+
+        final long pageGeneration = generation;
+        loadingPages.put(pageIndex, Single.fromCallable(() ->
+                        store.query(source, pageGeneration, start, PAGE_SIZE))
+                .subscribeOn(scheduler)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(page -> {
+                    loadingPages.remove(pageIndex);
+                    pages.put(pageIndex, page);
+                    listener.onItemsLoaded(start, Math.min(PAGE_SIZE, size - start));
+                }, throwable -> {
+                    loadingPages.remove(pageIndex);
+                    Log.w(TAG, "Could not read page " + pageIndex + " of " + source, throwable);
+                }));
+    }
+
+    private void cancelPageLoads() {
+        for (final Disposable disposable : loadingPages.values()) {
+            disposable.dispose();
+        }
+        loadingPages.clear();
+    }
+}
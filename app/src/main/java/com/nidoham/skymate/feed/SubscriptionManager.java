@@ -0,0 +1,114 @@
+package com.nidoham.skymate.feed;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The channels the user subscribed to, stored in their own preferences file.
+ */
+public final class SubscriptionManager {
+
+    private static final String PREFERENCES_NAME = "subscriptions";
+    private static final String KEY_CHANNELS = "channels";
+
+    public static final class Subscription {
+        private final int serviceId;
+        @NonNull
+        private final String url;
+
+        public Subscription(final int serviceId, @NonNull final String url) {
+            this.serviceId = serviceId;
+            this.url = url;
+        }
+
+        public int getServiceId() {
+            return serviceId;
+        }
+
+        @NonNull
+        public String getUrl() {
+            return url;
+        }
+
+        @NonNull
+        String encode() {
+            return serviceId + ":" + url;
+        }
+
+        @NonNull
+        static Subscription decode(@NonNull final String encoded) {
+            final int separator = encoded.indexOf(':');
+            return new Subscription(Integer.parseInt(encoded.substring(0, separator)),
+                    encoded.substring(separator + 1));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Subscription)) {
+                return false;
+            }
+            final Subscription other = (Subscription) o;
+            return serviceId == other.serviceId && url.equals(other.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serviceId, url);
+        }
+    }
+
+    @NonNull
+    private final SharedPreferences preferences;
+
+    public SubscriptionManager(@NonNull final Context context) {
+        preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    @NonNull
+    public List<Subscription> getSubscriptions() {
+        final List<Subscription> subscriptions = new ArrayList<>();
+        for (final String encoded : preferences.getStringSet(KEY_CHANNELS, new HashSet<>())) {
+            try {
+                subscriptions.add(Subscription.decode(encoded));
+            } catch (final RuntimeException e) {
+                // malformed entry, cannot happen unless the file was edited by hand
+            }
+        }
+        return subscriptions;
+    }
+
+    public boolean isSubscribed(final int serviceId, @NonNull final String channelUrl) {
+        return preferences.getStringSet(KEY_CHANNELS, new HashSet<>())
+                .contains(new Subscription(serviceId, channelUrl).encode());
+    }
+
+    public void subscribe(final int serviceId, @NonNull final String channelUrl) {
+        edit(serviceId, channelUrl, true);
+    }
+
+    public void unsubscribe(final int serviceId, @NonNull final String channelUrl) {
+        edit(serviceId, channelUrl, false);
+    }
+
+    private synchronized void edit(final int serviceId, @NonNull final String channelUrl,
+                                   final boolean add) {
+        // the returned set must not be modified
+        final Set<String> channels =
+                new HashSet<>(preferences.getStringSet(KEY_CHANNELS, new HashSet<>()));
+        final String encoded = new Subscription(serviceId, channelUrl).encode();
+        if (add ? channels.add(encoded) : channels.remove(encoded)) {
+            preferences.edit().putStringSet(KEY_CHANNELS, channels).apply();
+        }
+    }
+}
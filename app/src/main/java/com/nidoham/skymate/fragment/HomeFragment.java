@@ -1,6 +1,7 @@
 package com.nidoham.skymate.fragment;
 
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -15,10 +16,28 @@ import com.nidoham.skymate.R;
 
 import com.nidoham.skymate.databinding.FragmentHomeBinding;
 import com.nidoham.skymate.fragment.home.*;
+import com.nidoham.skymate.util.KioskPreloader;
+import com.nidoham.strivo.kiosk.KioskList;
+
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+
+import java.util.Arrays;
+
+import io.reactivex.rxjava3.disposables.Disposable;
 
 public class HomeFragment extends Fragment {
+    private static final String TAG = HomeFragment.class.getSimpleName();
+
+    private static final KioskPreloader.HomeTab[] TABS = {
+            KioskPreloader.HomeTab.LIVE,
+            KioskPreloader.HomeTab.TRENDING,
+            KioskPreloader.HomeTab.TV,
+            KioskPreloader.HomeTab.GAMES
+    };
+
     private FragmentHomeBinding binding;
     private HomeTabAdapter tabAdapter;
+    private Disposable preloadDisposable;
     
     @Nullable
     @Override
@@ -34,6 +53,11 @@ public class HomeFragment extends Fragment {
         
         setupViewPager();
         setupTabLayout();
+
+        // load all tabs' kiosks in the background, so switching tabs does not wait for them
+        preloadDisposable = KioskPreloader
+                .preload(KioskList.YOUTUBE_SERVICE_ID, Arrays.asList(TABS))
+                .subscribe();
     }
     
     private void setupViewPager() {
@@ -65,6 +89,9 @@ public class HomeFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (preloadDisposable != null) {
+            preloadDisposable.dispose();
+        }
         binding = null;
     }
     
@@ -78,24 +105,23 @@ public class HomeFragment extends Fragment {
         @NonNull
         @Override
         public Fragment createFragment(int position) {
-            switch (position) {
-                case 0:
-                    return new SubHomeFragment();
-                case 1:
-                    return new SubTrendingFragment();
-                case 2:
-                    return new SubHomeFragment();
-                case 3:
-                    return new SubHomeFragment();
-                    
-                default:
-                    return new SubHomeFragment();
+            if (TABS[position] == KioskPreloader.HomeTab.TRENDING) {
+                return new SubTrendingFragment();
+            }
+
+            String kioskId = null; // the default kiosk, if the tab's one cannot be resolved
+            try {
+                kioskId = KioskPreloader.resolveKioskId(KioskList.YOUTUBE_SERVICE_ID,
+                        TABS[position]);
+            } catch (ExtractionException e) {
+                Log.w(TAG, "Could not resolve kiosk of tab " + TABS[position], e);
             }
+            return SubHomeFragment.newInstance(kioskId);
         }
         
         @Override
         public int getItemCount() {
-            return 4; // Trending and Live tabs
+            return TABS.length;
         }
     }
 }
\ No newline at end of file
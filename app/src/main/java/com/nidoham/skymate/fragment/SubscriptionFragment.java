@@ -1,28 +1,133 @@
 package com.nidoham.skymate.fragment;
 
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Toast;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+
+import com.nidoham.skymate.adapter.VideoAdapter;
+import com.nidoham.skymate.databinding.FragmentsHomeBinding;
+import com.nidoham.skymate.feed.FeedAggregator;
+import com.nidoham.skymate.feed.SubscriptionManager;
+import com.nidoham.skymate.util.LoadScheduler;
+
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+
+import java.util.ArrayList;
+import java.util.List;
 
-import com.nidoham.skymate.R;
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.disposables.CompositeDisposable;
+
+public class SubscriptionFragment extends Fragment implements VideoAdapter.OnVideoItemClickListener {
+
+    private FragmentsHomeBinding binding;
+    private final List<StreamInfoItem> videoList = new ArrayList<>();
+    private VideoAdapter videoAdapter;
+    private final CompositeDisposable disposables = new CompositeDisposable();
+    private final FeedAggregator feedAggregator = new FeedAggregator(this);
+    private SubscriptionManager subscriptionManager;
 
-public class SubscriptionFragment extends Fragment {
-    
     @Nullable
     @Override
-    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, 
-                           @Nullable Bundle savedInstanceState) {
-        // Inflate the layout for this fragment
-        return inflater.inflate(R.layout.activity_splash, container, false);
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        binding = FragmentsHomeBinding.inflate(inflater, container, false);
+        return binding.getRoot();
     }
-    
+
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        // Initialize views and setup here
+        subscriptionManager = new SubscriptionManager(requireContext());
+
+        videoAdapter = new VideoAdapter(videoList, this);
+        binding.recyclerViewTrending.setLayoutManager(new LinearLayoutManager(requireContext()));
+        binding.recyclerViewTrending.setAdapter(videoAdapter);
+        binding.swipeRefreshLayout.setOnRefreshListener(() -> loadFeed(true));
+
+        loadFeed(false);
+    }
+
+    private void loadFeed(boolean forceLoad) {
+        disposables.clear();
+        binding.swipeRefreshLayout.setRefreshing(false);
+        binding.progressBar.setVisibility(View.VISIBLE);
+
+        disposables.add(feedAggregator.load(subscriptionManager.getSubscriptions(), forceLoad)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(result -> {
+                    // channels which completed are shown right away, the rest are merged in later
+                    if (!result.getItems().isEmpty() || result.isComplete()) {
+                        binding.progressBar.setVisibility(View.GONE);
+                    }
+                    videoList.clear();
+                    videoList.addAll(result.getItems());
+                    videoAdapter.notifyDataSetChanged();
+
+                    if (result.isComplete() && result.getFailedChannels() > 0) {
+                        Toast.makeText(requireContext(), "Could not load "
+                                + result.getFailedChannels() + " of "
+                                + result.getTotalChannels() + " channels",
+                                Toast.LENGTH_SHORT).show();
+                    } else if (result.isComplete() && result.getTotalChannels() == 0) {
+                        Toast.makeText(requireContext(), "No subscriptions yet",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }, throwable -> {
+                    binding.progressBar.setVisibility(View.GONE);
+                    Toast.makeText(requireContext(), "Error loading feed: "
+                            + throwable.getMessage(), Toast.LENGTH_LONG).show();
+                }));
+    }
+
+    @Override
+    public void onVideoItemClick(StreamInfoItem videoItem) {
+        if (videoItem != null && videoItem.getUrl() != null) {
+            Intent intent = new Intent(Intent.ACTION_VIEW);
+            intent.setData(Uri.parse(videoItem.getUrl()));
+            requireContext().startActivity(intent);
+        }
+    }
+
+    @Override
+    public void onMoreOptionsClick(StreamInfoItem videoItem, int position) {
+        if (videoItem != null) {
+            // unsubscribing removes the channel's videos from the feed
+            VideoOptionsMenu.show(requireContext(), videoItem, () -> loadFeed(false));
+        }
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        LoadScheduler.getInstance().setVisible(this, true);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        LoadScheduler.getInstance().setVisible(this, false);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        disposables.clear();
+        binding = null;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        disposables.dispose();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.nidoham.skymate.fragment;
+
+import android.content.Context;
+import android.content.Intent;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.nidoham.skymate.download.DownloadManager;
+import com.nidoham.skymate.feed.SubscriptionManager;
+
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+/**
+ * The menu shown for the "more options" button of a video in a list.
+ * <br>
+ * Subscribing to or unsubscribing from the uploader is one of its entries, so that the
+ * subscription only changes when the user picks it explicitly. Downloads are started with
+ * {@link DownloadManager#downloadStream} and report their outcome in a toast.
+ */
+public final class VideoOptionsMenu {
+
+    private VideoOptionsMenu() {
+    }
+
+    /**
+     * @param context                the context to show the menu in
+     * @param item                   the video the menu is for
+     * @param onSubscriptionsChanged run after subscribing or unsubscribing, or {@code null}
+     */
+    public static void show(@NonNull final Context context, @NonNull final StreamInfoItem item,
+                            @Nullable final Runnable onSubscriptionsChanged) {
+        final List<String> labels = new ArrayList<>();
+        final List<Runnable> actions = new ArrayList<>();
+
+        final String channelUrl = item.getUploaderUrl();
+        if (channelUrl != null) {
+            final SubscriptionManager subscriptions = new SubscriptionManager(context);
+            final int serviceId = item.getServiceId();
+            final String uploader = item.getUploaderName();
+            if (subscriptions.isSubscribed(serviceId, channelUrl)) {
+                labels.add("Unsubscribe from " + uploader);
+                actions.add(() -> {
+                    subscriptions.unsubscribe(serviceId, channelUrl);
+                    Toast.makeText(context, "Unsubscribed from " + uploader,
+                            Toast.LENGTH_SHORT).show();
+                    if (onSubscriptionsChanged != null) {
+                        onSubscriptionsChanged.run();
+                    }
+                });
+            } else {
+                labels.add("Subscribe to " + uploader);
+                actions.add(() -> {
+                    subscriptions.subscribe(serviceId, channelUrl);
+                    Toast.makeText(context, "Subscribed to " + uploader,
+                            Toast.LENGTH_SHORT).show();
+                    if (onSubscriptionsChanged != null) {
+                        onSubscriptionsChanged.run();
+                    }
+                });
+            }
+        }
+
+        if (item.getUrl() != null) {
+            labels.add("Share");
+            actions.add(() -> share(context, item));
+            labels.add("Download");
+            actions.add(() -> download(context, item));
+        }
+
+        if (labels.isEmpty()) {
+            return;
+        }
+        new MaterialAlertDialogBuilder(context)
+                .setTitle(item.getName())
+                .setItems(labels.toArray(new String[0]),
+                        (dialog, which) -> actions.get(which).run())
+                .show();
+    }
+
+    private static void download(@NonNull final Context context,
+                                 @NonNull final StreamInfoItem item) {
+        // the download outlives the list it was started from
+        final Context appContext = context.getApplicationContext();
+        final DownloadManager downloadManager = new DownloadManager(appContext);
+        if (!downloadManager.isDownloadAllowed()) {
+            Toast.makeText(appContext, "Downloads are only allowed over Wi-Fi",
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        Toast.makeText(appContext, "Downloading " + item.getName(), Toast.LENGTH_SHORT).show();
+        downloadManager.downloadStream(item.getServiceId(), item.getUrl(), null)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(file -> Toast.makeText(appContext, "Downloaded " + file.getName(),
+                                Toast.LENGTH_SHORT).show(),
+                        throwable -> Toast.makeText(appContext, "Download failed: "
+                                + throwable.getMessage(), Toast.LENGTH_LONG).show());
+    }
+
+    private static void share(@NonNull final Context context,
+                              @NonNull final StreamInfoItem item) {
+        final Intent intent = new Intent(Intent.ACTION_SEND)
+                .setType("text/plain")
+                .putExtra(Intent.EXTRA_SUBJECT, item.getName())
+                .putExtra(Intent.EXTRA_TEXT, item.getUrl());
+        context.startActivity(Intent.createChooser(intent, "Share"));
+    }
+}
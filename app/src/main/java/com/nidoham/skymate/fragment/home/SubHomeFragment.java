@@ -14,14 +14,20 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.nidoham.skymate.adapter.ImagePrefetcher;
 import com.nidoham.skymate.adapter.VideoAdapter;
+import com.nidoham.skymate.feed.FeedStore;
+import com.nidoham.skymate.feed.FeedWindow;
+import com.nidoham.skymate.fragment.VideoOptionsMenu;
+import com.nidoham.skymate.util.KioskPreloader;
+import com.nidoham.skymate.util.LoadScheduler;
+import com.nidoham.skymate.util.PagePrefetcher;
+import com.nidoham.skymate.util.StreamPreResolver;
 
 import com.nidoham.skymate.databinding.FragmentsHomeBinding;
 import com.nidoham.strivo.kiosk.KioskList;
 import org.schabi.newpipe.extractor.InfoItem;
-import org.schabi.newpipe.extractor.ListExtractor;
 import org.schabi.newpipe.extractor.NewPipe;
-import org.schabi.newpipe.extractor.Page;
 import org.schabi.newpipe.extractor.kiosk.KioskInfo;
 import org.schabi.newpipe.extractor.stream.StreamInfoItem;
 
@@ -29,22 +35,50 @@ import java.util.ArrayList;
 import java.util.List;
 
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
-import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
-import io.reactivex.rxjava3.schedulers.Schedulers;
-import org.schabi.newpipe.util.ExtractorHelper;
+import org.schabi.newpipe.util.ContentVariant;
+import org.schabi.newpipe.util.InfoLoader;
 
-public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoItemClickListener {
+public class SubHomeFragment extends Fragment
+        implements VideoAdapter.OnVideoItemClickListener, FeedWindow.Listener {
+
+    private static final String ARG_KIOSK_ID = "kiosk_id";
 
     private FragmentsHomeBinding binding;
-    private final List<StreamInfoItem> videoList = new ArrayList<>();
+    private FeedStore feedStore;
+    private String feedSource;
+    private FeedWindow videoList;
     private VideoAdapter videoAdapter;
     private final CompositeDisposable disposables = new CompositeDisposable();
+    private final LoadScheduler loadScheduler = LoadScheduler.getInstance();
+
+    private final PagePrefetcher<StreamInfoItem> pagePrefetcher = new PagePrefetcher<>(this,
+            page -> InfoLoader.getMoreKioskItems(KioskList.YOUTUBE_SERVICE_ID, trendingUrl, page),
+            "home");
+
+    private StreamPreResolver streamPreResolver;
+    private ImagePrefetcher imagePrefetcher;
 
-    private Page nextPage;
     private String trendingUrl;
     private boolean isLoading = false;
-    private boolean hasMorePages = true;
+    private boolean isAppending = false;
+    private boolean hasAppended = false;
+    // a fresh first page which arrived after pages were appended to the stale one shown
+    @Nullable
+    private KioskInfo pendingFirstPage;
+
+    /**
+     * @param kioskId the kiosk to show, or {@code null} for the service's default kiosk
+     */
+    public static SubHomeFragment newInstance(@Nullable String kioskId) {
+        SubHomeFragment fragment = new SubHomeFragment();
+        Bundle args = new Bundle();
+        args.putString(ARG_KIOSK_ID, kioskId);
+        fragment.setArguments(args);
+        return fragment;
+    }
 
     @Nullable
     @Override
@@ -57,10 +91,16 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        initializeTrendingUrl();
+        // shows the videos stored by the last session until the first page is loaded
+        feedStore = FeedStore.getInstance(requireContext());
+        feedSource = "home:" + ContentVariant.current() + ":" + trendingUrl;
+        videoList = new FeedWindow(feedStore, feedSource,
+                loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE), this);
         setupRecyclerView();
         setupSwipeRefresh();
-        initializeTrendingUrl();
-        loadTrendingVideos();
+        videoList.refresh();
+        loadTrendingVideos(false);
     }
 
     private void setupRecyclerView() {
@@ -69,6 +109,14 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
         binding.recyclerViewTrending.setLayoutManager(layoutManager);
         binding.recyclerViewTrending.setAdapter(videoAdapter);
 
+        // resolve the streams on screen, so that opening one of them is quick
+        streamPreResolver = new StreamPreResolver(requireContext(), this);
+        streamPreResolver.attach(binding.recyclerViewTrending, videoList);
+
+        // load the images of the items scrolled towards, so that they show up without placeholders
+        imagePrefetcher = new ImagePrefetcher(requireContext());
+        imagePrefetcher.attach(binding.recyclerViewTrending, videoList);
+
         // Add scroll listener for pagination
         binding.recyclerViewTrending.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
@@ -76,12 +124,11 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
                 super.onScrolled(recyclerView, dx, dy);
 
                 if (dy > 0) { // Scrolling down
-                    int visibleItemCount = layoutManager.getChildCount();
                     int totalItemCount = layoutManager.getItemCount();
-                    int pastVisibleItems = layoutManager.findFirstVisibleItemPosition();
+                    int lastVisibleItem = layoutManager.findLastVisibleItemPosition();
+                    pagePrefetcher.onScrolled(lastVisibleItem);
 
-                    if (!isLoading && hasMorePages && 
-                        (visibleItemCount + pastVisibleItems) >= totalItemCount - 5) {
+                    if (!isLoading && lastVisibleItem + 1 >= totalItemCount - 5) {
                         loadMoreVideos();
                     }
                 }
@@ -96,12 +143,17 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
     }
 
     private void initializeTrendingUrl() {
+        String kioskId = getArguments() != null ? getArguments().getString(ARG_KIOSK_ID) : null;
         try {
-            trendingUrl = NewPipe.getService(KioskList.YOUTUBE_SERVICE_ID)
-                    .getKioskList()
-                    .getDefaultKioskExtractor()
-                    .getLinkHandler()
-                    .getUrl();
+            if (kioskId != null) {
+                trendingUrl = KioskPreloader.urlOf(KioskList.YOUTUBE_SERVICE_ID, kioskId);
+            } else {
+                trendingUrl = NewPipe.getService(KioskList.YOUTUBE_SERVICE_ID)
+                        .getKioskList()
+                        .getDefaultKioskExtractor()
+                        .getLinkHandler()
+                        .getUrl();
+            }
         } catch (Exception e) {
             Toast.makeText(requireContext(), "Error initializing trending: " + e.getMessage(), 
                     Toast.LENGTH_LONG).show();
@@ -109,14 +161,23 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
     }
 
     private void refreshTrendingVideos() {
-        nextPage = null;
-        hasMorePages = true;
-        videoList.clear();
-        videoAdapter.notifyDataSetChanged();
-        loadTrendingVideos();
+        if (pendingFirstPage != null && !isLoading) {
+            // loaded moments ago, only held back to not drop the pages scrolled to
+            KioskInfo kioskInfo = pendingFirstPage;
+            pendingFirstPage = null;
+            binding.swipeRefreshLayout.setRefreshing(false);
+            disposables.add(storeFirstPage(kioskInfo).subscribe(
+                    () -> showFirstPage(kioskInfo, true),
+                    throwable -> Toast.makeText(requireContext(), "Error storing videos: "
+                            + throwable.getMessage(), Toast.LENGTH_SHORT).show()));
+            return;
+        }
+        pagePrefetcher.reset(null);
+        hasAppended = false; // replacing them is what was asked for
+        loadTrendingVideos(true);
     }
 
-    private void loadTrendingVideos() {
+    private void loadTrendingVideos(boolean forceLoad) {
         if (trendingUrl == null || isLoading) {
             binding.swipeRefreshLayout.setRefreshing(false);
             return;
@@ -126,40 +187,24 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
         binding.progressBar.setVisibility(View.VISIBLE);
         binding.swipeRefreshLayout.setRefreshing(false);
 
-        Single<KioskInfo> trendingObservable = ExtractorHelper.getKioskInfo(
-                KioskList.YOUTUBE_SERVICE_ID,
-                trendingUrl,
-                false
-        );
-
-        disposables.add(trendingObservable
-                .subscribeOn(Schedulers.io())
+        // emits a cached page first, then possibly a fresh one replacing it
+        disposables.add(InfoLoader.loadKioskInfo(KioskList.YOUTUBE_SERVICE_ID, trendingUrl,
+                        forceLoad)
+                .subscribeOn(loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE))
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(kioskInfo -> {
+                // one page at a time, so that the stale page is never stored after the fresh one
+                .concatMapMaybe(loaded -> {
                     binding.progressBar.setVisibility(View.GONE);
                     isLoading = false;
-
-                    List<StreamInfoItem> filteredList = new ArrayList<>();
-                    for (InfoItem item : kioskInfo.getRelatedItems()) {
-                        if (item instanceof StreamInfoItem) {
-                            filteredList.add((StreamInfoItem) item);
-                        }
+                    if (!loaded.stale && hasAppended) {
+                        // replacing the page now would drop the pages appended to it and
+                        // scroll the list back under the user's finger
+                        pendingFirstPage = loaded.info;
+                        return Maybe.empty();
                     }
-
-                    int oldSize = videoList.size();
-                    videoList.addAll(filteredList);
-                    
-                    if (oldSize == 0) {
-                        videoAdapter.notifyDataSetChanged();
-                    } else {
-                        videoAdapter.notifyItemRangeInserted(oldSize, filteredList.size());
-                    }
-
-                    // Store next page information for pagination
-                    nextPage = kioskInfo.getNextPage();
-                    hasMorePages = nextPage != null;
-
-                }, throwable -> {
+                    return storeFirstPage(loaded.info).andThen(Maybe.just(loaded));
+                })
+                .subscribe(loaded -> showFirstPage(loaded.info, !loaded.stale), throwable -> {
                     binding.progressBar.setVisibility(View.GONE);
                     isLoading = false;
                     Toast.makeText(requireContext(), "Error: " + throwable.getMessage(), 
@@ -167,38 +212,73 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
                 }));
     }
 
+    private Completable storeFirstPage(KioskInfo kioskInfo) {
+        List<StreamInfoItem> items = streamItemsOf(kioskInfo.getRelatedItems());
+        return Completable.fromAction(() -> feedStore.putFirstPage(feedSource, items))
+                .subscribeOn(loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE))
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * @param fresh whether the page was just loaded; a stale page can be days old and the
+     *              continuation of it expired, so the following pages are only read ahead from
+     *              a fresh one
+     */
+    private void showFirstPage(KioskInfo kioskInfo, boolean fresh) {
+        hasAppended = false;
+        videoList.refresh();
+        pagePrefetcher.reset(fresh ? kioskInfo.getNextPage() : null);
+    }
+
     private void loadMoreVideos() {
-        if (trendingUrl == null || isLoading || !hasMorePages || nextPage == null) {
+        if (trendingUrl == null || isAppending || !pagePrefetcher.hasMore()) {
             return;
         }
 
-        isLoading = true;
-
-        Single<ListExtractor.InfoItemsPage<StreamInfoItem>> moreItemsObservable = 
-                ExtractorHelper.getMoreKioskItems(KioskList.YOUTUBE_SERVICE_ID, trendingUrl, nextPage);
-
-        disposables.add(moreItemsObservable
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(itemsPage -> {
-                    isLoading = false;
+        // usually served right away from the pages read ahead
+        pagePrefetcher.requestNext(itemsPage -> {
+            isAppending = true;
+            List<StreamInfoItem> newItems = streamItemsOf(itemsPage.getItems());
+            disposables.add(Completable.fromAction(() -> feedStore.appendPage(feedSource, newItems))
+                    .subscribeOn(loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE))
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(() -> {
+                        isAppending = false;
+                        hasAppended = true;
+                        videoList.refresh();
+                    }, throwable -> {
+                        isAppending = false;
+                        Toast.makeText(requireContext(), "Error storing videos: " +
+                                throwable.getMessage(), Toast.LENGTH_SHORT).show();
+                    }));
+        }, throwable -> {
+            Toast.makeText(requireContext(), "Error loading more videos: " + 
+                    throwable.getMessage(), Toast.LENGTH_SHORT).show();
+        });
+    }
 
-                    List<StreamInfoItem> newItems = itemsPage.getItems();
-                    if (newItems != null && !newItems.isEmpty()) {
-                        int oldSize = videoList.size();
-                        videoList.addAll(newItems);
-                        videoAdapter.notifyItemRangeInserted(oldSize, newItems.size());
-                    }
+    private static List<StreamInfoItem> streamItemsOf(List<? extends InfoItem> items) {
+        List<StreamInfoItem> streamItems = new ArrayList<>();
+        for (InfoItem item : items) {
+            if (item instanceof StreamInfoItem) {
+                streamItems.add((StreamInfoItem) item);
+            }
+        }
+        return streamItems;
+    }
 
-                    // Update pagination information
-                    nextPage = itemsPage.getNextPage();
-                    hasMorePages = nextPage != null;
+    @Override
+    public void onRefreshed(int oldSize, int newSize, boolean appended) {
+        if (appended) {
+            videoAdapter.notifyItemRangeInserted(oldSize, newSize - oldSize);
+        } else {
+            videoAdapter.notifyDataSetChanged();
+        }
+    }
 
-                }, throwable -> {
-                    isLoading = false;
-                    Toast.makeText(requireContext(), "Error loading more videos: " + 
-                            throwable.getMessage(), Toast.LENGTH_SHORT).show();
-                }));
+    @Override
+    public void onItemsLoaded(int start, int count) {
+        videoAdapter.notifyItemRangeChanged(start, count);
     }
 
     @Override
@@ -214,16 +294,34 @@ public class SubHomeFragment extends Fragment implements VideoAdapter.OnVideoIte
 
     @Override
     public void onMoreOptionsClick(StreamInfoItem videoItem, int position) {
-        if (videoItem != null && videoItem.getName() != null) {
-            Toast.makeText(requireContext(), "Options: " + videoItem.getName(), Toast.LENGTH_SHORT).show();
-            // TODO: Show context menu
+        if (videoItem != null) {
+            VideoOptionsMenu.show(requireContext(), videoItem, null);
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        loadScheduler.setVisible(this, true);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        loadScheduler.setVisible(this, false);
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         disposables.clear();
+        videoList.dispose();
+        pagePrefetcher.dispose();
+        streamPreResolver.detach();
+        imagePrefetcher.detach();
+        isAppending = false;
+        hasAppended = false;
+        pendingFirstPage = null;
         binding = null;
     }
 
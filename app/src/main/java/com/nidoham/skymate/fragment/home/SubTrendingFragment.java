@@ -14,14 +14,19 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.nidoham.skymate.adapter.ImagePrefetcher;
 import com.nidoham.skymate.adapter.VideoAdapter;
+import com.nidoham.skymate.feed.FeedStore;
+import com.nidoham.skymate.feed.FeedWindow;
+import com.nidoham.skymate.fragment.VideoOptionsMenu;
+import com.nidoham.skymate.util.LoadScheduler;
+import com.nidoham.skymate.util.PagePrefetcher;
+import com.nidoham.skymate.util.StreamPreResolver;
 
 import com.nidoham.skymate.databinding.FragmentsTrendingBinding;
 import com.nidoham.strivo.kiosk.KioskList;
 import org.schabi.newpipe.extractor.InfoItem;
-import org.schabi.newpipe.extractor.ListExtractor;
 import org.schabi.newpipe.extractor.NewPipe;
-import org.schabi.newpipe.extractor.Page;
 import org.schabi.newpipe.extractor.kiosk.KioskInfo;
 import org.schabi.newpipe.extractor.stream.StreamInfoItem;
 
@@ -29,22 +34,37 @@ import java.util.ArrayList;
 import java.util.List;
 
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
-import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
-import io.reactivex.rxjava3.schedulers.Schedulers;
-import org.schabi.newpipe.util.ExtractorHelper;
+import org.schabi.newpipe.util.ContentVariant;
+import org.schabi.newpipe.util.InfoLoader;
 
-public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVideoItemClickListener {
+public class SubTrendingFragment extends Fragment
+        implements VideoAdapter.OnVideoItemClickListener, FeedWindow.Listener {
 
     private FragmentsTrendingBinding binding;
-    private final List<StreamInfoItem> videoList = new ArrayList<>();
+    private FeedStore feedStore;
+    private String feedSource;
+    private FeedWindow videoList;
     private VideoAdapter videoAdapter;
     private final CompositeDisposable disposables = new CompositeDisposable();
+    private final LoadScheduler loadScheduler = LoadScheduler.getInstance();
+
+    private final PagePrefetcher<StreamInfoItem> pagePrefetcher = new PagePrefetcher<>(this,
+            page -> InfoLoader.getMoreKioskItems(KioskList.YOUTUBE_SERVICE_ID, trendingUrl, page),
+            "trending");
+
+    private StreamPreResolver streamPreResolver;
+    private ImagePrefetcher imagePrefetcher;
 
-    private Page nextPage;
     private String trendingUrl;
     private boolean isLoading = false;
-    private boolean hasMorePages = true;
+    private boolean isAppending = false;
+    private boolean hasAppended = false;
+    // a fresh first page which arrived after pages were appended to the stale one shown
+    @Nullable
+    private KioskInfo pendingFirstPage;
 
     @Nullable
     @Override
@@ -57,10 +77,16 @@ public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVide
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        initializeTrendingUrl();
+        // shows the videos stored by the last session until the first page is loaded
+        feedStore = FeedStore.getInstance(requireContext());
+        feedSource = "trending:" + ContentVariant.current() + ":" + trendingUrl;
+        videoList = new FeedWindow(feedStore, feedSource,
+                loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE), this);
         setupRecyclerView();
         setupSwipeRefresh();
-        initializeTrendingUrl();
-        loadTrendingVideos();
+        videoList.refresh();
+        loadTrendingVideos(false);
     }
 
     private void setupRecyclerView() {
@@ -69,6 +95,14 @@ public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVide
         binding.recyclerViewTrending.setLayoutManager(layoutManager);
         binding.recyclerViewTrending.setAdapter(videoAdapter);
 
+        // resolve the streams on screen, so that opening one of them is quick
+        streamPreResolver = new StreamPreResolver(requireContext(), this);
+        streamPreResolver.attach(binding.recyclerViewTrending, videoList);
+
+        // load the images of the items scrolled towards, so that they show up without placeholders
+        imagePrefetcher = new ImagePrefetcher(requireContext());
+        imagePrefetcher.attach(binding.recyclerViewTrending, videoList);
+
         // Add scroll listener for pagination
         binding.recyclerViewTrending.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
@@ -76,12 +110,11 @@ public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVide
                 super.onScrolled(recyclerView, dx, dy);
 
                 if (dy > 0) { // Scrolling down
-                    int visibleItemCount = layoutManager.getChildCount();
                     int totalItemCount = layoutManager.getItemCount();
-                    int pastVisibleItems = layoutManager.findFirstVisibleItemPosition();
+                    int lastVisibleItem = layoutManager.findLastVisibleItemPosition();
+                    pagePrefetcher.onScrolled(lastVisibleItem);
 
-                    if (!isLoading && hasMorePages && 
-                        (visibleItemCount + pastVisibleItems) >= totalItemCount - 5) {
+                    if (!isLoading && lastVisibleItem + 1 >= totalItemCount - 5) {
                         loadMoreVideos();
                     }
                 }
@@ -107,14 +140,23 @@ public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVide
     }
 
     private void refreshTrendingVideos() {
-        nextPage = null;
-        hasMorePages = true;
-        videoList.clear();
-        videoAdapter.notifyDataSetChanged();
-        loadTrendingVideos();
+        if (pendingFirstPage != null && !isLoading) {
+            // loaded moments ago, only held back to not drop the pages scrolled to
+            KioskInfo kioskInfo = pendingFirstPage;
+            pendingFirstPage = null;
+            binding.swipeRefreshLayout.setRefreshing(false);
+            disposables.add(storeFirstPage(kioskInfo).subscribe(
+                    () -> showFirstPage(kioskInfo, true),
+                    throwable -> Toast.makeText(requireContext(), "Error storing videos: "
+                            + throwable.getMessage(), Toast.LENGTH_SHORT).show()));
+            return;
+        }
+        pagePrefetcher.reset(null);
+        hasAppended = false; // replacing them is what was asked for
+        loadTrendingVideos(true);
     }
 
-    private void loadTrendingVideos() {
+    private void loadTrendingVideos(boolean forceLoad) {
         if (trendingUrl == null || isLoading) {
             binding.swipeRefreshLayout.setRefreshing(false);
             return;
@@ -124,39 +166,24 @@ public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVide
         binding.progressBar.setVisibility(View.VISIBLE);
         binding.swipeRefreshLayout.setRefreshing(false);
 
-        Single<KioskInfo> trendingObservable = ExtractorHelper.getKioskInfo(
-                KioskList.YOUTUBE_SERVICE_ID,
-                trendingUrl,
-                false
-        );
-
-        disposables.add(trendingObservable
-                .subscribeOn(Schedulers.io())
+        // emits a cached page first, then possibly a fresh one replacing it
+        disposables.add(InfoLoader.loadKioskInfo(KioskList.YOUTUBE_SERVICE_ID, trendingUrl,
+                        forceLoad)
+                .subscribeOn(loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE))
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(kioskInfo -> {
+                // one page at a time, so that the stale page is never stored after the fresh one
+                .concatMapMaybe(loaded -> {
                     binding.progressBar.setVisibility(View.GONE);
                     isLoading = false;
-
-                    // Filter out active live streams while keeping regular videos and completed live videos
-                    for (InfoItem item : kioskInfo.getRelatedItems()) {
-                        if (item instanceof StreamInfoItem) {
-                            StreamInfoItem streamItem = (StreamInfoItem) item;
-                            
-                            // Exclude active live streams (duration -1 typically indicates live content)
-                            // Allow videos with duration 0 or positive values (regular videos and completed live streams)
-                            if (streamItem.getDuration() != -1) {
-                                videoList.add(streamItem);
-                            }
-                        }
+                    if (!loaded.stale && hasAppended) {
+                        // replacing the page now would drop the pages appended to it and
+                        // scroll the list back under the user's finger
+                        pendingFirstPage = loaded.info;
+                        return Maybe.empty();
                     }
-                    
-                    videoAdapter.notifyDataSetChanged();
-
-                    // Store next page information for pagination
-                    nextPage = kioskInfo.getNextPage();
-                    hasMorePages = nextPage != null;
-
-                }, throwable -> {
+                    return storeFirstPage(loaded.info).andThen(Maybe.just(loaded));
+                })
+                .subscribe(loaded -> showFirstPage(loaded.info, !loaded.stale), throwable -> {
                     binding.progressBar.setVisibility(View.GONE);
                     binding.swipeRefreshLayout.setRefreshing(false);
                     isLoading = false;
@@ -165,45 +192,81 @@ public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVide
                 }));
     }
 
+    private Completable storeFirstPage(KioskInfo kioskInfo) {
+        List<StreamInfoItem> items = streamItemsOf(kioskInfo.getRelatedItems());
+        return Completable.fromAction(() -> feedStore.putFirstPage(feedSource, items))
+                .subscribeOn(loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE))
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * @param fresh whether the page was just loaded; a stale page can be days old and the
+     *              continuation of it expired, so the following pages are only read ahead from
+     *              a fresh one
+     */
+    private void showFirstPage(KioskInfo kioskInfo, boolean fresh) {
+        hasAppended = false;
+        videoList.refresh();
+        pagePrefetcher.reset(fresh ? kioskInfo.getNextPage() : null);
+    }
+
     private void loadMoreVideos() {
-        if (trendingUrl == null || isLoading || !hasMorePages || nextPage == null) {
+        if (trendingUrl == null || isAppending || !pagePrefetcher.hasMore()) {
             return;
         }
 
-        isLoading = true;
+        // usually served right away from the pages read ahead
+        pagePrefetcher.requestNext(itemsPage -> {
+            isAppending = true;
+            List<StreamInfoItem> newItems = streamItemsOf(itemsPage.getItems());
+            disposables.add(Completable.fromAction(() -> feedStore.appendPage(feedSource, newItems))
+                    .subscribeOn(loadScheduler.scheduler(this, LoadScheduler.Priority.VISIBLE))
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(() -> {
+                        isAppending = false;
+                        hasAppended = true;
+                        videoList.refresh();
+                    }, throwable -> {
+                        isAppending = false;
+                        Toast.makeText(requireContext(), "Error storing videos: " +
+                                throwable.getMessage(), Toast.LENGTH_SHORT).show();
+                    }));
+        }, throwable -> {
+            Toast.makeText(requireContext(), "Error loading more videos: " + 
+                    throwable.getMessage(), Toast.LENGTH_SHORT).show();
+        });
+    }
 
-        Single<ListExtractor.InfoItemsPage<StreamInfoItem>> moreItemsObservable = 
-                ExtractorHelper.getMoreKioskItems(KioskList.YOUTUBE_SERVICE_ID, trendingUrl, nextPage);
+    private static List<StreamInfoItem> streamItemsOf(List<? extends InfoItem> items) {
+        List<StreamInfoItem> streamItems = new ArrayList<>();
 
-        disposables.add(moreItemsObservable
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(itemsPage -> {
-                    isLoading = false;
+        // Filter out active live streams while keeping regular videos and completed live videos
+        for (InfoItem item : items) {
+            if (item instanceof StreamInfoItem) {
+                StreamInfoItem streamItem = (StreamInfoItem) item;
 
-                    List<StreamInfoItem> newItems = itemsPage.getItems();
-                    if (newItems != null && !newItems.isEmpty()) {
-                        int oldSize = videoList.size();
-                        
-                        // Apply the same filtering logic for pagination
-                        for (StreamInfoItem item : newItems) {
-                            if (item.getDuration() != -1) {
-                                videoList.add(item);
-                            }
-                        }
-                        
-                        videoAdapter.notifyItemRangeInserted(oldSize, videoList.size() - oldSize);
-                    }
+                // Exclude active live streams (duration -1 typically indicates live content)
+                // Allow videos with duration 0 or positive values (regular videos and completed live streams)
+                if (streamItem.getDuration() != -1) {
+                    streamItems.add(streamItem);
+                }
+            }
+        }
+        return streamItems;
+    }
 
-                    // Update pagination information
-                    nextPage = itemsPage.getNextPage();
-                    hasMorePages = nextPage != null;
+    @Override
+    public void onRefreshed(int oldSize, int newSize, boolean appended) {
+        if (appended) {
+            videoAdapter.notifyItemRangeInserted(oldSize, newSize - oldSize);
+        } else {
+            videoAdapter.notifyDataSetChanged();
+        }
+    }
 
-                }, throwable -> {
-                    isLoading = false;
-                    Toast.makeText(requireContext(), "Error loading more videos: " + 
-                            throwable.getMessage(), Toast.LENGTH_SHORT).show();
-                }));
+    @Override
+    public void onItemsLoaded(int start, int count) {
+        videoAdapter.notifyItemRangeChanged(start, count);
     }
 
     @Override
@@ -222,16 +285,34 @@ public class SubTrendingFragment extends Fragment implements VideoAdapter.OnVide
 
     @Override
     public void onMoreOptionsClick(StreamInfoItem videoItem, int position) {
-        if (videoItem != null && videoItem.getName() != null) {
-            Toast.makeText(requireContext(), "Options: " + videoItem.getName(), Toast.LENGTH_SHORT).show();
-            // TODO: Implement context menu with options like share, download, etc.
+        if (videoItem != null) {
+            VideoOptionsMenu.show(requireContext(), videoItem, null);
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        loadScheduler.setVisible(this, true);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        loadScheduler.setVisible(this, false);
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         disposables.clear();
+        videoList.dispose();
+        pagePrefetcher.dispose();
+        streamPreResolver.detach();
+        imagePrefetcher.detach();
+        isAppending = false;
+        hasAppended = false;
+        pendingFirstPage = null;
         binding = null;
     }
 
@@ -0,0 +1,93 @@
+package com.nidoham.skymate.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with a fixed set of exponentially growing buckets, so that its memory use
+ * does not depend on how many values are recorded.
+ * <br>
+ * Bucket upper bounds grow by 25% each, from 1 up to roughly two million, which is enough for
+ * durations in milliseconds (~30 minutes) with a relative error of at most 25%. Larger values
+ * are counted in the last bucket.
+ */
+public final class Histogram {
+
+    private static final double GROWTH_FACTOR = 1.25;
+    private static final int BUCKET_COUNT = 66;
+    private static final long[] UPPER_BOUNDS = new long[BUCKET_COUNT];
+
+    static {
+        double bound = 1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            UPPER_BOUNDS[i] = (long) Math.ceil(bound);
+            if (i > 0 && UPPER_BOUNDS[i] <= UPPER_BOUNDS[i - 1]) {
+                UPPER_BOUNDS[i] = UPPER_BOUNDS[i - 1] + 1;
+            }
+            bound *= GROWTH_FACTOR;
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        int index = Arrays.binarySearch(UPPER_BOUNDS, v);
+        if (index < 0) {
+            index = -index - 1; // insertion point, i.e. the first bound larger than v
+        }
+        counts.incrementAndGet(Math.min(index, BUCKET_COUNT - 1));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        final long c = count.get();
+        return c == 0 ? 0 : (double) sum.get() / c;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket containing the given percentile, capped at the
+     *         largest recorded value, or 0 if nothing was recorded
+     */
+    public long getPercentile(final double percentile) {
+        final long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                // the last bucket has no upper bound, its values can be anything up to the max
+                return i == BUCKET_COUNT - 1 ? max.get() : Math.min(UPPER_BOUNDS[i], max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
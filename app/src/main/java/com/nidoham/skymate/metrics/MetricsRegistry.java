@@ -0,0 +1,169 @@
+package com.nidoham.skymate.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of named counters and {@link Histogram}s.
+ * <br>
+ * The number of series is bounded: once {@link #MAX_SERIES} names exist, new names are folded
+ * into a shared {@code overflow} series, so memory use stays fixed however many hosts or
+ * endpoints show up.
+ * <br>
+ * {@link com.nidoham.skymate.DebugActivity} runs in its own process, so it cannot read this
+ * registry directly; instead the main process writes a text snapshot with
+ * {@link #writeSnapshot(Context)} which the debug screen then reads with
+ * {@link #readSnapshot(Context)}.
+ */
+public final class MetricsRegistry {
+    private static final String TAG = MetricsRegistry.class.getSimpleName();
+
+    private static final int MAX_SERIES = 256;
+    private static final String OVERFLOW_SERIES = "overflow";
+    private static final String SNAPSHOT_FILE_NAME = "metrics_snapshot.txt";
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "metrics-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    @NonNull
+    public Histogram histogram(@NonNull final String name) {
+        final Histogram histogram = histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+        return histograms.computeIfAbsent(
+                histograms.size() < MAX_SERIES ? name : OVERFLOW_SERIES, key -> new Histogram());
+    }
+
+    @NonNull
+    public AtomicLong counter(@NonNull final String name) {
+        final AtomicLong counter = counters.get(name);
+        if (counter != null) {
+            return counter;
+        }
+        return counters.computeIfAbsent(
+                counters.size() < MAX_SERIES ? name : OVERFLOW_SERIES, key -> new AtomicLong());
+    }
+
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * @param prefix only series whose name starts with this are included, {@code null} for all
+     * @return a human readable table of all matching series, sorted by name
+     */
+    @NonNull
+    public String dump(@Nullable final String prefix) {
+        final StringBuilder out = new StringBuilder();
+
+        final Map<String, Histogram> sortedHistograms = new TreeMap<>(histograms);
+        if (!sortedHistograms.isEmpty()) {
+            out.append(String.format(Locale.ROOT, "%-48s %7s %7s %7s %7s %7s%n",
+                    "histogram (ms)", "count", "p50", "p95", "p99", "max"));
+        }
+        for (final Map.Entry<String, Histogram> entry : sortedHistograms.entrySet()) {
+            if (prefix != null && !entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+            final Histogram h = entry.getValue();
+            out.append(String.format(Locale.ROOT, "%-48s %7d %7d %7d %7d %7d%n",
+                    entry.getKey(), h.getCount(), h.getPercentile(50), h.getPercentile(95),
+                    h.getPercentile(99), h.getMax()));
+        }
+
+        final Map<String, AtomicLong> sortedCounters = new TreeMap<>(counters);
+        if (!sortedCounters.isEmpty()) {
+            out.append('\n');
+        }
+        for (final Map.Entry<String, AtomicLong> entry : sortedCounters.entrySet()) {
+            if (prefix != null && !entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+            out.append(String.format(Locale.ROOT, "%-48s %7d%n",
+                    entry.getKey(), entry.getValue().get()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes {@link #dump(String)} to a file in the app's private storage, where
+     * {@link #readSnapshot(Context)} can pick it up from another process.
+     */
+    public void writeSnapshot(@NonNull final Context context) {
+        final File file = new File(context.getFilesDir(), SNAPSHOT_FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("Snapshot taken: " + new Date() + "\n\n");
+            writer.write(dump(null));
+        } catch (final IOException e) {
+            Log.w(TAG, "Could not write metrics snapshot", e);
+        }
+    }
+
+    /**
+     * Like {@link #writeSnapshot(Context)}, but on a background thread, so that it can be called
+     * from the main thread. Calls made while a snapshot is still pending are folded into it.
+     */
+    public void writeSnapshotAsync(@NonNull final Context context) {
+        if (!snapshotPending.compareAndSet(false, true)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        snapshotExecutor.execute(() -> {
+            snapshotPending.set(false);
+            writeSnapshot(appContext);
+        });
+    }
+
+    @Nullable
+    public static String readSnapshot(@NonNull final Context context) {
+        final File file = new File(context.getFilesDir(), SNAPSHOT_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(file.toPath()),
+                    StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            Log.w(TAG, "Could not read metrics snapshot", e);
+            return null;
+        }
+    }
+}
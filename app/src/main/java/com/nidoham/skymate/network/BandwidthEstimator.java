@@ -0,0 +1,205 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.util.image.PreferredImageQuality;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the throughput and latency of the current network from the real traffic recorded by
+ * {@link NetworkEventRecorder}, over a sliding window of recent samples, and derives a
+ * {@link QualityTier} from them.
+ * <br>
+ * Throughput is measured per link, not per call: bytes are divided by the time during which at
+ * least one response body was being transferred, so that concurrent (e.g. HTTP/2 multiplexed)
+ * transfers sharing the link do not make it look slower than it is.
+ */
+public final class BandwidthEstimator {
+
+    /**
+     * The highest qualities worth loading on the current network. Callers should never use a
+     * quality above the user's preference, only lower it to the tier's.
+     */
+    public enum QualityTier {
+        LOW(PreferredImageQuality.LOW, 360),
+        MEDIUM(PreferredImageQuality.MEDIUM, 720),
+        HIGH(PreferredImageQuality.HIGH, Integer.MAX_VALUE);
+
+        private final PreferredImageQuality maxImageQuality;
+        private final int maxVideoHeight;
+
+        QualityTier(final PreferredImageQuality maxImageQuality, final int maxVideoHeight) {
+            this.maxImageQuality = maxImageQuality;
+            this.maxVideoHeight = maxVideoHeight;
+        }
+
+        @NonNull
+        public PreferredImageQuality getMaxImageQuality() {
+            return maxImageQuality;
+        }
+
+        public int getMaxVideoHeight() {
+            return maxVideoHeight;
+        }
+    }
+
+    private static final int WINDOW_SIZE = 32;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int MIN_SAMPLES = 3;
+
+    private static final long LOW_BYTES_PER_SECOND = 100 * 1024;
+    private static final long MEDIUM_BYTES_PER_SECOND = 500 * 1024;
+    private static final long LOW_LATENCY_MILLIS = 1500;
+    private static final long MEDIUM_LATENCY_MILLIS = 600;
+    private static final double HYSTERESIS = 1.25;
+
+    private static final BandwidthEstimator INSTANCE = new BandwidthEstimator();
+
+    // ring buffers of the most recent samples, with the time each was taken
+    private final long[] transferTimes = new long[WINDOW_SIZE];
+    private final long[] transferBytes = new long[WINDOW_SIZE];
+    private final long[] transferBusyNanos = new long[WINDOW_SIZE];
+    private int transferCount;
+    private final long[] latencyTimes = new long[WINDOW_SIZE];
+    private final long[] latencyMillis = new long[WINDOW_SIZE];
+    private int latencyCount;
+
+    private int activeTransfers;
+    private long lastChangeNanos;
+    private long pendingBusyNanos;
+
+    private QualityTier tier = QualityTier.HIGH;
+
+    private BandwidthEstimator() {
+    }
+
+    public static BandwidthEstimator getInstance() {
+        return INSTANCE;
+    }
+
+    synchronized void onTransferStart() {
+        advanceBusyTime(System.nanoTime());
+        activeTransfers++;
+    }
+
+    synchronized void onTransferEnd(final long byteCount) {
+        final long now = System.nanoTime();
+        advanceBusyTime(now);
+        activeTransfers = Math.max(0, activeTransfers - 1);
+        if (byteCount > 0) {
+            final int i = transferCount++ % WINDOW_SIZE;
+            transferTimes[i] = now;
+            transferBytes[i] = byteCount;
+            transferBusyNanos[i] = pendingBusyNanos;
+            pendingBusyNanos = 0;
+            updateTier(now);
+        }
+    }
+
+    /**
+     * For transfers which ended without {@link #onTransferEnd(long)}, e.g. failed calls.
+     */
+    synchronized void onTransferAborted() {
+        advanceBusyTime(System.nanoTime());
+        activeTransfers = Math.max(0, activeTransfers - 1);
+    }
+
+    synchronized void onLatency(final long millis) {
+        final long now = System.nanoTime();
+        final int i = latencyCount++ % WINDOW_SIZE;
+        latencyTimes[i] = now;
+        latencyMillis[i] = millis;
+        updateTier(now);
+    }
+
+    private void advanceBusyTime(final long now) {
+        if (activeTransfers > 0) {
+            pendingBusyNanos += now - lastChangeNanos;
+        }
+        lastChangeNanos = now;
+    }
+
+    /**
+     * @return the link throughput in the window, or -1 if there are too few samples
+     */
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond(System.nanoTime());
+    }
+
+    /**
+     * @return the median time to first byte in the window, or -1 if there are too few samples
+     */
+    public synchronized long getLatencyMillis() {
+        return medianLatencyMillis(System.nanoTime());
+    }
+
+    /**
+     * @return the tier for the current network, {@link QualityTier#HIGH} (i.e. no limit) while
+     *         there are too few samples
+     */
+    @NonNull
+    public synchronized QualityTier getQualityTier() {
+        return tier;
+    }
+
+    private long bytesPerSecond(final long now) {
+        long bytes = 0;
+        long busyNanos = 0;
+        int samples = 0;
+        for (int i = 0; i < Math.min(transferCount, WINDOW_SIZE); i++) {
+            if (now - transferTimes[i] <= WINDOW_NANOS) {
+                bytes += transferBytes[i];
+                busyNanos += transferBusyNanos[i];
+                samples++;
+            }
+        }
+        if (samples < MIN_SAMPLES || busyNanos <= 0) {
+            return -1;
+        }
+        return bytes * TimeUnit.SECONDS.toNanos(1) / busyNanos;
+    }
+
+    private long medianLatencyMillis(final long now) {
+        final long[] recent = new long[WINDOW_SIZE];
+        int samples = 0;
+        for (int i = 0; i < Math.min(latencyCount, WINDOW_SIZE); i++) {
+            if (now - latencyTimes[i] <= WINDOW_NANOS) {
+                recent[samples++] = latencyMillis[i];
+            }
+        }
+        if (samples < MIN_SAMPLES) {
+            return -1;
+        }
+        Arrays.sort(recent, 0, samples);
+        return recent[samples / 2];
+    }
+
+    private void updateTier(final long now) {
+        final long throughput = bytesPerSecond(now);
+        final long latency = medianLatencyMillis(now);
+        if (isBelow(throughput, latency, LOW_BYTES_PER_SECOND, LOW_LATENCY_MILLIS,
+                tier == QualityTier.LOW)) {
+            tier = QualityTier.LOW;
+        } else if (isBelow(throughput, latency, MEDIUM_BYTES_PER_SECOND, MEDIUM_LATENCY_MILLIS,
+                tier != QualityTier.HIGH)) {
+            tier = QualityTier.MEDIUM;
+        } else {
+            tier = QualityTier.HIGH;
+        }
+    }
+
+    /**
+     * @param atOrBelow whether the current tier is already at or below the one guarded by the
+     *                  thresholds, in which case leaving it requires beating them by
+     *                  {@link #HYSTERESIS}, so that the tier does not flap
+     */
+    private static boolean isBelow(final long throughput, final long latency,
+                                   final long minBytesPerSecond, final long maxLatencyMillis,
+                                   final boolean atOrBelow) {
+        final double margin = atOrBelow ? HYSTERESIS : 1;
+        return (throughput >= 0 && throughput < minBytesPerSecond * margin)
+                || latency > maxLatencyMillis / margin;
+    }
+}
@@ -0,0 +1,225 @@
+package com.nidoham.skymate.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dns;
+
+/**
+ * {@link Dns} which caches answers in memory and persists the last good ones across launches.
+ * <br>
+ * The platform resolver does not expose record TTLs, so fixed ones are used: an answer is served
+ * without asking the resolver for {@link #FRESH_TTL_MILLIS} (or {@link #PERSISTED_TTL_MILLIS}
+ * right after a launch, when it comes from disk), and kept as a fallback for when the resolver
+ * fails for up to {@link #STALE_TTL_MILLIS}.
+ */
+public final class CachingDns implements Dns {
+    private static final String TAG = CachingDns.class.getSimpleName();
+
+    /**
+     * Hosts needed by the first kiosk request and the first thumbnails of every launch.
+     */
+    public static final List<String> WARM_UP_HOSTS = Collections.unmodifiableList(Arrays.asList(
+            "youtube.com", "www.youtube.com", "i.ytimg.com", "yt3.ggpht.com"));
+
+    static final long FRESH_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long PERSISTED_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    static final long STALE_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // warm-up lookups run in parallel on this many threads, which exit when idle
+    private static final int BACKGROUND_THREADS = 4;
+    private static final long BACKGROUND_KEEP_ALIVE_SECONDS = 10;
+
+    private static final String PREFERENCES_NAME = "dns_cache";
+    private static final String FIELD_SEPARATOR = "|";
+    private static final String ADDRESS_SEPARATOR = ",";
+
+    private static final class Entry {
+        final List<InetAddress> addresses;
+        final long resolvedAtMillis;
+        final long freshUntilMillis;
+
+        Entry(final List<InetAddress> addresses, final long resolvedAtMillis,
+              final long freshUntilMillis) {
+            this.addresses = addresses;
+            this.resolvedAtMillis = resolvedAtMillis;
+            this.freshUntilMillis = freshUntilMillis;
+        }
+    }
+
+    private final Dns delegate;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Executor backgroundExecutor;
+    @Nullable
+    private volatile SharedPreferences preferences;
+
+    public CachingDns() {
+        this(Dns.SYSTEM);
+    }
+
+    public CachingDns(@NonNull final Dns delegate) {
+        this(delegate, newBackgroundExecutor());
+    }
+
+    /**
+     * @param backgroundExecutor runs warm-up lookups and loads the persisted answers
+     */
+    @VisibleForTesting
+    CachingDns(@NonNull final Dns delegate, @NonNull final Executor backgroundExecutor) {
+        this.delegate = delegate;
+        this.backgroundExecutor = backgroundExecutor;
+    }
+
+    private static Executor newBackgroundExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(BACKGROUND_THREADS,
+                BACKGROUND_THREADS, BACKGROUND_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    final Thread thread = new Thread(runnable, "dns-background");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Loads the answers persisted by previous launches in the background, and persists new
+     * answers from then on. Lookups made before the answers are loaded go to the resolver.
+     */
+    public void attach(@NonNull final Context context) {
+        final Context appContext = context.getApplicationContext();
+        backgroundExecutor.execute(() -> load(appContext.getSharedPreferences(
+                PREFERENCES_NAME, Context.MODE_PRIVATE)));
+    }
+
+    private void load(final SharedPreferences prefs) {
+        final long now = System.currentTimeMillis();
+        final Map<String, ?> storedValues = prefs.getAll();
+        for (final Map.Entry<String, ?> stored : storedValues.entrySet()) {
+            if (stored.getValue() instanceof String) {
+                final Entry entry = decode(stored.getKey(), (String) stored.getValue());
+                if (entry != null && now - entry.resolvedAtMillis < STALE_TTL_MILLIS) {
+                    cache.putIfAbsent(stored.getKey(), entry);
+                }
+            }
+        }
+
+        // answers resolved from now on are persisted by resolve(), the ones resolved while
+        // loading (e.g. by the warm-up) are all in the cache by the time it is iterated
+        preferences = prefs;
+        final SharedPreferences.Editor editor = prefs.edit();
+        boolean changed = false;
+        for (final Map.Entry<String, Entry> resolved : cache.entrySet()) {
+            final Entry entry = resolved.getValue();
+            final String value = encode(entry.addresses, entry.resolvedAtMillis);
+            if (!value.equals(storedValues.get(resolved.getKey()))) {
+                editor.putString(resolved.getKey(), value);
+                changed = true;
+            }
+        }
+        if (changed) {
+            editor.apply();
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<InetAddress> lookup(@NonNull final String hostname) throws UnknownHostException {
+        final long now = System.currentTimeMillis();
+        final Entry entry = cache.get(hostname);
+        if (entry != null && now < entry.freshUntilMillis) {
+            return entry.addresses;
+        }
+
+        try {
+            return resolve(hostname, now);
+        } catch (final UnknownHostException e) {
+            if (entry != null && now - entry.resolvedAtMillis < STALE_TTL_MILLIS) {
+                Log.w(TAG, "Resolving " + hostname + " failed, using last known answer");
+                return entry.addresses;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves the given hosts in parallel in the background, refreshing their cached answers.
+     */
+    public void warmUp(@NonNull final Collection<String> hostnames) {
+        for (final String hostname : hostnames) {
+            backgroundExecutor.execute(() -> {
+                try {
+                    resolve(hostname, System.currentTimeMillis());
+                } catch (final UnknownHostException e) {
+                    Log.w(TAG, "Could not warm up " + hostname + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private List<InetAddress> resolve(final String hostname, final long now)
+            throws UnknownHostException {
+        final List<InetAddress> addresses =
+                Collections.unmodifiableList(new ArrayList<>(delegate.lookup(hostname)));
+        final Entry previous =
+                cache.put(hostname, new Entry(addresses, now, now + FRESH_TTL_MILLIS));
+
+        final SharedPreferences prefs = preferences;
+        if (prefs != null && (previous == null || !previous.addresses.equals(addresses)
+                || now - previous.resolvedAtMillis > PERSISTED_TTL_MILLIS)) {
+            prefs.edit().putString(hostname, encode(addresses, now)).apply();
+        }
+        return addresses;
+    }
+
+    private static String encode(final List<InetAddress> addresses, final long resolvedAtMillis) {
+        final StringBuilder value = new StringBuilder().append(resolvedAtMillis);
+        String separator = FIELD_SEPARATOR;
+        for (final InetAddress address : addresses) {
+            value.append(separator).append(address.getHostAddress());
+            separator = ADDRESS_SEPARATOR;
+        }
+        return value.toString();
+    }
+
+    @Nullable
+    private static Entry decode(final String hostname, final String value) {
+        final int separator = value.indexOf(FIELD_SEPARATOR);
+        if (separator <= 0 || separator == value.length() - 1) {
+            return null;
+        }
+
+        try {
+            final long resolvedAt = Long.parseLong(value.substring(0, separator));
+            final List<InetAddress> addresses = new ArrayList<>();
+            for (final String ip : value.substring(separator + 1).split(ADDRESS_SEPARATOR)) {
+                // IP literals are parsed locally, InetAddress.getByName does no lookup for them
+                final InetAddress literal = InetAddress.getByName(ip);
+                addresses.add(InetAddress.getByAddress(hostname, literal.getAddress()));
+            }
+            return new Entry(Collections.unmodifiableList(addresses), resolvedAt,
+                    resolvedAt + PERSISTED_TTL_MILLIS);
+        } catch (final NumberFormatException | UnknownHostException e) {
+            return null;
+        }
+    }
+}
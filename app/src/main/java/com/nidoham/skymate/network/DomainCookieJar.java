@@ -0,0 +1,148 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe store of named cookie strings, each one optionally scoped to a domain and an
+ * expiry time.
+ * <br>
+ * The {@code Cookie} header for a host is built once and then served from a per-host cache, so
+ * the per-request cost is a map lookup. Any change to the jar bumps a version number, which
+ * invalidates all cached headers at once; expired cookies invalidate the headers they are part of
+ * when they expire. The cookies in a header are ordered by the key they were stored under, and
+ * each cookie is only sent once, as part of the first entry containing it.
+ */
+public final class DomainCookieJar {
+
+    private static final long NEVER_EXPIRES = Long.MAX_VALUE;
+    // extractor traffic only touches a handful of hosts, this just bounds pathological cases
+    private static final int MAX_CACHED_HOSTS = 64;
+
+    private static final class Entry {
+        final String cookies;
+        @Nullable
+        final String domain;
+        final long expiresAtMillis;
+
+        Entry(final String cookies, @Nullable final String domain, final long expiresAtMillis) {
+            this.cookies = cookies;
+            this.domain = domain;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isExpired(final long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        boolean matches(final String host) {
+            return domain == null || host.equals(domain)
+                    || (host.endsWith(domain) && host.length() > domain.length()
+                            && host.charAt(host.length() - domain.length() - 1) == '.');
+        }
+    }
+
+    private static final class CookieHeader {
+        final String value;
+        final int version;
+        final long validUntilMillis;
+
+        CookieHeader(final String value, final int version, final long validUntilMillis) {
+            this.value = value;
+            this.version = version;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private final Map<String, CookieHeader> headersByHost = new ConcurrentHashMap<>();
+    private final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * @param key     the name to store the cookies under, used to replace or remove them later
+     * @param cookies the cookies, in {@code Cookie} header format ({@code a=b; c=d}), or
+     *                {@code null} to remove them
+     * @param domain  the domain (and its subdomains) to send the cookies to, or {@code null} to
+     *                send them to every host
+     * @param expiresAtMillis when the cookies stop being sent, as a wall clock time
+     */
+    public void put(@NonNull final String key, @Nullable final String cookies,
+                    @Nullable final String domain, final long expiresAtMillis) {
+        if (cookies == null) {
+            remove(key);
+            return;
+        }
+        entries.put(key, new Entry(cookies, domain, expiresAtMillis));
+        invalidate();
+    }
+
+    public void put(@NonNull final String key, @Nullable final String cookies,
+                    @Nullable final String domain) {
+        put(key, cookies, domain, NEVER_EXPIRES);
+    }
+
+    @Nullable
+    public String get(@NonNull final String key) {
+        final Entry entry = entries.get(key);
+        return entry == null || entry.isExpired(System.currentTimeMillis()) ? null : entry.cookies;
+    }
+
+    public void remove(@NonNull final String key) {
+        if (entries.remove(key) != null) {
+            invalidate();
+        }
+    }
+
+    /**
+     * @param host the host the request is sent to
+     * @return the value of the {@code Cookie} header to send to that host, empty if none
+     */
+    @NonNull
+    public String getCookieHeader(@NonNull final String host) {
+        final long now = System.currentTimeMillis();
+        final CookieHeader cached = headersByHost.get(host);
+        if (cached != null && cached.version == version.get() && now < cached.validUntilMillis) {
+            return cached.value;
+        }
+        return buildCookieHeader(host, now).value;
+    }
+
+    private CookieHeader buildCookieHeader(final String host, final long now) {
+        // read the version first: if the jar changes while building, the header is stored with
+        // an outdated version and will be rebuilt by the next lookup
+        final int currentVersion = version.get();
+        final Set<String> cookies = new LinkedHashSet<>();
+        long validUntil = NEVER_EXPIRES;
+        for (final Entry entry : entries.values()) {
+            if (entry.isExpired(now) || !entry.matches(host)) {
+                continue;
+            }
+            validUntil = Math.min(validUntil, entry.expiresAtMillis);
+            for (final String cookie : entry.cookies.split("; *")) {
+                if (!cookie.isEmpty()) {
+                    cookies.add(cookie);
+                }
+            }
+        }
+
+        final CookieHeader header =
+                new CookieHeader(String.join("; ", cookies), currentVersion, validUntil);
+        if (headersByHost.size() >= MAX_CACHED_HOSTS) {
+            headersByHost.clear();
+        }
+        headersByHost.put(host, header);
+        return header;
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+        headersByHost.clear();
+    }
+}
@@ -0,0 +1,204 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import okio.ByteString;
+
+/**
+ * On-disk format of the request/response pairs written by {@link RecordingDownloader} and read by
+ * {@link ReplayDownloader}.
+ * <br>
+ * The file is a gzip stream of records, each holding the request key (method, URL and a hash of
+ * the request body, as request headers like cookies differ between runs) and the full response.
+ * The stream is flushed after each record, so a recording survives the app being killed; a
+ * truncated last record is ignored when reading.
+ */
+final class DownloaderFixture {
+
+    private static final int MAGIC = 0x534b4658; // "SKFX"
+    private static final int VERSION = 1;
+
+    static final class Entry {
+        final String method;
+        final String url;
+        final String bodyHash;
+        final Response response;
+        /** The UTF-8 length of the response body, as recorded. */
+        final long bodyBytes;
+
+        Entry(final String method, final String url, final String bodyHash,
+              final Response response, final long bodyBytes) {
+            this.method = method;
+            this.url = url;
+            this.bodyHash = bodyHash;
+            this.response = response;
+            this.bodyBytes = bodyBytes;
+        }
+
+        String exactKey() {
+            return method + ' ' + url + '\n' + bodyHash;
+        }
+
+        String urlKey() {
+            return method + ' ' + url;
+        }
+    }
+
+    private DownloaderFixture() {
+    }
+
+    @NonNull
+    static String bodyHashOf(@Nullable final byte[] dataToSend) {
+        return dataToSend == null ? "" : ByteString.of(dataToSend).sha256().hex();
+    }
+
+    /**
+     * @return all complete records of the given file, in the order they were recorded
+     */
+    @NonNull
+    static List<Entry> read(@NonNull final File file) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a downloader fixture: " + file);
+            }
+            while (true) {
+                final Entry entry;
+                try {
+                    entry = readEntry(in);
+                } catch (final EOFException e) {
+                    break; // end of the file, or a record cut short by the app being killed
+                }
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static Entry readEntry(final DataInputStream in) throws IOException {
+        final String method = in.readUTF();
+        final String url = in.readUTF();
+        final String bodyHash = in.readUTF();
+
+        final int code = in.readInt();
+        final String message = in.readUTF();
+        final int headerCount = in.readInt();
+        final Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            final String name = in.readUTF();
+            final int valueCount = in.readInt();
+            final List<String> values = new ArrayList<>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(in.readUTF());
+            }
+            headers.put(name, values);
+        }
+        final byte[] body = readNullableBytes(in);
+        final byte[] latestUrl = readNullableBytes(in);
+
+        return new Entry(method, url, bodyHash, new Response(code, message, headers,
+                stringOf(body), stringOf(latestUrl)), body == null ? 0 : body.length);
+    }
+
+    @Nullable
+    private static byte[] readNullableBytes(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    @Nullable
+    private static String stringOf(@Nullable final byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends records to a new fixture file. Safe to use from multiple threads.
+     */
+    static final class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        Writer(@NonNull final File file) throws IOException {
+            // syncFlush makes every flush() write out all data compressed so far
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(file), true)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+
+        synchronized void append(@NonNull final Request request,
+                                 @NonNull final Response response) throws IOException {
+            out.writeUTF(request.httpMethod());
+            out.writeUTF(request.url());
+            out.writeUTF(bodyHashOf(request.dataToSend()));
+
+            out.writeInt(response.responseCode());
+            out.writeUTF(response.responseMessage() == null ? "" : response.responseMessage());
+            final Map<String, List<String>> headers = response.responseHeaders();
+            int headerCount = 0;
+            for (final String name : headers.keySet()) {
+                if (name != null) {
+                    headerCount++;
+                }
+            }
+            out.writeInt(headerCount);
+            for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (header.getKey() == null) {
+                    continue; // the status line in HttpURLConnection style maps
+                }
+                out.writeUTF(header.getKey());
+                out.writeInt(header.getValue().size());
+                for (final String value : header.getValue()) {
+                    out.writeUTF(value);
+                }
+            }
+            writeNullableString(response.responseBody());
+            writeNullableString(response.latestUrl());
+            out.flush();
+        }
+
+        private void writeNullableString(@Nullable final String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            // writeUTF() is limited to 64 KiB, which response bodies easily exceed
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.nidoham.skymate.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Application interceptor limiting how many calls may be active against a single host.
+ * <br>
+ * OkHttp's {@link okhttp3.Dispatcher} limits only apply to {@code enqueue()}d calls, while
+ * Picasso and most extractor requests use blocking {@code execute()}, so the limit is enforced
+ * here instead. The calls {@link RequestHedger} enqueues go through a dispatcher of its own
+ * without per-host limits, so this is the only limit for them as well. A permit is held until
+ * the response body is closed.
+ */
+public final class HostConcurrencyLimiter implements Interceptor {
+    private static final String TAG = HostConcurrencyLimiter.class.getSimpleName();
+
+    // a leaked (never closed) response body must not block a host forever
+    private static final long MAX_PERMIT_WAIT_SECONDS = 30;
+
+    private final int maxCallsPerHost;
+    private final ConcurrentHashMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public HostConcurrencyLimiter(final int maxCallsPerHost) {
+        this.maxCallsPerHost = maxCallsPerHost;
+    }
+
+    @VisibleForTesting
+    int availablePermits(@NonNull final String host) {
+        final Semaphore semaphore = permits.get(host);
+        return semaphore == null ? maxCallsPerHost : semaphore.availablePermits();
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final String host = chain.request().url().host();
+        final Semaphore semaphore = permits.computeIfAbsent(host,
+                key -> new Semaphore(maxCallsPerHost, true));
+
+        final boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(MAX_PERMIT_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + host);
+        }
+        if (!acquired) {
+            Log.w(TAG, "Per-host limit wait timed out, proceeding anyway: " + host);
+            return chain.proceed(chain.request());
+        }
+
+        final Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (final IOException | RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+
+        final ResponseBody body = response.body();
+        if (body == null) {
+            semaphore.release();
+            return response;
+        }
+        return response.newBuilder()
+                .body(new PermitReleasingBody(body, semaphore))
+                .build();
+    }
+
+    private static final class PermitReleasingBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private BufferedSource source;
+
+        PermitReleasingBody(final ResponseBody delegate, final Semaphore semaphore) {
+            this.delegate = delegate;
+            this.semaphore = semaphore;
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NonNull
+        @Override
+        public synchronized BufferedSource source() {
+            if (source == null) {
+                source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                semaphore.release();
+                            }
+                        }
+                    }
+                });
+            }
+            return source;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import okhttp3.Headers;
+
+/**
+ * Adaptive token bucket per host, meant to keep request bursts below the threshold at which
+ * YouTube starts answering with {@code 429} and a reCAPTCHA challenge.
+ * <br>
+ * Every successful response raises the host's rate additively up to {@link #MAX_RATE}, every
+ * {@code 429}/{@code 503} halves it and honours {@code Retry-After}. If a
+ * {@link ChallengeHandler} accepts to show it, a {@code 429} additionally opens a challenge on the
+ * host: requests acquired afterwards wait until the challenge is resolved (new cookies stored) or
+ * cancelled, and are then released together, instead of each of them running into the same
+ * {@code 429}. Without a handler nothing could resolve the challenge, so requests are not held.
+ */
+public final class HostRateLimiter {
+
+    static final double INITIAL_RATE = 8.0; // requests per second
+    static final double MIN_RATE = 0.5;
+    static final double MAX_RATE = 16.0;
+    private static final double RATE_INCREASE_STEP = 0.25;
+    private static final double BACKOFF_FACTOR = 0.5;
+
+    private static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    private static final long MAX_CHALLENGE_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Shows reCAPTCHA challenges to the user.
+     */
+    public interface ChallengeHandler {
+        /**
+         * Called on the thread of the request which got the first {@code 429} while no challenge
+         * was shown.
+         *
+         * @param url the URL which answered with the challenge
+         * @return whether the challenge is shown and will eventually be reported through
+         *         {@link #resolveChallenges(boolean)}; if not, no requests are held back
+         */
+        boolean onChallenge(@NonNull String url);
+    }
+
+    private static final class Bucket {
+        double rate = INITIAL_RATE;
+        double tokens = INITIAL_RATE;
+        long lastRefillNanos;
+        long pausedUntilNanos;
+        @Nullable
+        Challenge challenge;
+
+        Bucket(final long nowNanos) {
+            lastRefillNanos = nowNanos;
+            pausedUntilNanos = nowNanos;
+        }
+
+        void refill(final long nowNanos) {
+            final double elapsedSeconds = (nowNanos - lastRefillNanos) / 1e9;
+            // allow bursts of up to one second worth of requests
+            tokens = Math.min(Math.max(rate, 1.0), tokens + elapsedSeconds * rate);
+            lastRefillNanos = nowNanos;
+        }
+    }
+
+    private static final class Challenge {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String url;
+        volatile boolean solved;
+
+        Challenge(final String url) {
+            this.url = url;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    // whether the handler accepted a challenge which was not resolved yet
+    private final AtomicBoolean challengeShown = new AtomicBoolean();
+    @Nullable
+    private volatile ChallengeHandler challengeHandler;
+
+    public HostRateLimiter() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock monotonic clock in nanoseconds, replaceable for deterministic testing
+     */
+    public HostRateLimiter(@NonNull final LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @param handler shows challenges to the user, or {@code null} if that is not possible
+     */
+    public void setChallengeHandler(@Nullable final ChallengeHandler handler) {
+        challengeHandler = handler;
+    }
+
+    /**
+     * Blocks until a request to {@code host} may be sent.
+     *
+     * @param host the host the request is for
+     * @throws InterruptedIOException if interrupted while waiting
+     * @throws ReCaptchaException     if a challenge is pending on the host and it was cancelled or
+     *                                not solved in time
+     */
+    public void acquire(@NonNull final String host)
+            throws InterruptedIOException, ReCaptchaException {
+        final Bucket bucket = buckets.computeIfAbsent(host,
+                key -> new Bucket(nanoClock.getAsLong()));
+        while (true) {
+            final Challenge challenge;
+            final long waitNanos;
+            synchronized (bucket) {
+                challenge = bucket.challenge;
+                if (challenge == null) {
+                    final long now = nanoClock.getAsLong();
+                    bucket.refill(now);
+                    if (now < bucket.pausedUntilNanos) {
+                        waitNanos = bucket.pausedUntilNanos - now;
+                    } else if (bucket.tokens >= 1.0) {
+                        bucket.tokens -= 1.0;
+                        return;
+                    } else {
+                        waitNanos = (long) ((1.0 - bucket.tokens) / bucket.rate * 1e9);
+                    }
+                } else {
+                    waitNanos = 0;
+                }
+            }
+
+            try {
+                if (challenge != null) {
+                    awaitChallenge(bucket, challenge);
+                } else {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while rate limited: " + host);
+            }
+        }
+    }
+
+    /**
+     * Takes a permit for an optional request to {@code host}, if one is available right away.
+     *
+     * @param host the host the request is for
+     * @return whether the request may be sent; if not, it should be skipped
+     */
+    public boolean tryAcquire(@NonNull final String host) {
+        final Bucket bucket = buckets.computeIfAbsent(host,
+                key -> new Bucket(nanoClock.getAsLong()));
+        synchronized (bucket) {
+            final long now = nanoClock.getAsLong();
+            bucket.refill(now);
+            if (bucket.challenge != null || now < bucket.pausedUntilNanos
+                    || bucket.tokens < 1.0) {
+                return false;
+            }
+            bucket.tokens -= 1.0;
+            return true;
+        }
+    }
+
+    /**
+     * Adapts the host's rate to the outcome of a request.
+     *
+     * @param host    the host the request was sent to
+     * @param url     the URL of the request, used for the reCAPTCHA challenge
+     * @param code    the HTTP status code of the response
+     * @param headers the response headers, inspected for {@code Retry-After}
+     */
+    public void onResponse(@NonNull final String host, @NonNull final String url, final int code,
+                           @NonNull final Headers headers) {
+        final Bucket bucket = buckets.computeIfAbsent(host,
+                key -> new Bucket(nanoClock.getAsLong()));
+        final ChallengeHandler handler = challengeHandler;
+        boolean challengeOpened = false;
+        synchronized (bucket) {
+            if (code == 429 || code == 503) {
+                bucket.rate = Math.max(MIN_RATE, bucket.rate * BACKOFF_FACTOR);
+                bucket.tokens = 0;
+                final long retryAfterMillis = parseRetryAfterMillis(headers);
+                if (retryAfterMillis > 0) {
+                    bucket.pausedUntilNanos = Math.max(bucket.pausedUntilNanos,
+                            nanoClock.getAsLong()
+                                    + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+                }
+                if (code == 429 && bucket.challenge == null && handler != null) {
+                    bucket.challenge = new Challenge(url);
+                    challengeOpened = true;
+                }
+            } else if (code < 400) {
+                bucket.rate = Math.min(MAX_RATE, bucket.rate + RATE_INCREASE_STEP);
+            }
+        }
+
+        // a challenge shown for another host is solved with the same cookies
+        if (challengeOpened && challengeShown.compareAndSet(false, true)
+                && !handler.onChallenge(url)) {
+            resolveChallenges(false);
+        }
+    }
+
+    /**
+     * Releases every request waiting on a challenge.
+     *
+     * @param solved whether new cookies were stored; if not, the waiting requests fail with a
+     *               {@link ReCaptchaException} instead of being sent
+     */
+    public void resolveChallenges(final boolean solved) {
+        challengeShown.set(false);
+        for (final Bucket bucket : buckets.values()) {
+            final Challenge challenge;
+            synchronized (bucket) {
+                challenge = bucket.challenge;
+                bucket.challenge = null;
+                if (solved) {
+                    // the new cookies make earlier Retry-After hints stale
+                    bucket.pausedUntilNanos = nanoClock.getAsLong();
+                }
+            }
+            if (challenge != null) {
+                challenge.solved = solved;
+                challenge.latch.countDown();
+            }
+        }
+    }
+
+    public boolean isChallengePending() {
+        for (final Bucket bucket : buckets.values()) {
+            synchronized (bucket) {
+                if (bucket.challenge != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the current rate of the host in requests per second
+     */
+    public double getRate(@NonNull final String host) {
+        final Bucket bucket = buckets.get(host);
+        if (bucket == null) {
+            return INITIAL_RATE;
+        }
+        synchronized (bucket) {
+            return bucket.rate;
+        }
+    }
+
+    private void awaitChallenge(final Bucket bucket, final Challenge challenge)
+            throws InterruptedException, ReCaptchaException {
+        if (!challenge.latch.await(MAX_CHALLENGE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            // nobody solved it: drop the challenge so that later requests try again, and show
+            // the next one in case this one never reached the user
+            synchronized (bucket) {
+                if (bucket.challenge == challenge) {
+                    bucket.challenge = null;
+                }
+            }
+            challengeShown.set(false);
+            throw new ReCaptchaException("reCaptcha Challenge pending", challenge.url);
+        }
+        if (!challenge.solved) {
+            throw new ReCaptchaException("reCaptcha Challenge cancelled", challenge.url);
+        }
+    }
+
+    static long parseRetryAfterMillis(@NonNull final Headers headers) {
+        final String retryAfter = headers.get("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+
+        long millis;
+        try {
+            millis = TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (final NumberFormatException e) {
+            final Date date = headers.getDate("Retry-After");
+            millis = date == null ? 0 : date.getTime() - System.currentTimeMillis();
+        }
+        return Math.max(0, Math.min(millis, MAX_RETRY_AFTER_MILLIS));
+    }
+}
@@ -0,0 +1,125 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * The HTTP core shared by the extractor downloader and the image loader.
+ * <br>
+ * Both traffic classes derive their clients from one base {@link OkHttpClient}, so they share the
+ * connection pool (and with it TLS sessions and HTTP/2 connections to hosts used by both), while
+ * each class keeps its own dispatcher and per-host concurrency limit, so that a burst of
+ * thumbnails can never starve extractor requests or vice versa.
+ */
+public final class HttpCore {
+
+    /** Traffic class names, as recorded by {@link NetworkEventRecorder}. */
+    public static final String API_CLIENT = "api";
+    public static final String IMAGE_CLIENT = "image";
+    public static final String DOWNLOAD_CLIENT = "download";
+
+    private static final int MAX_IDLE_CONNECTIONS = 10;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final int API_MAX_REQUESTS = 16;
+    private static final int API_MAX_REQUESTS_PER_HOST = 6;
+    private static final int IMAGE_MAX_REQUESTS = 32;
+    private static final int IMAGE_MAX_REQUESTS_PER_HOST = 8;
+
+    private static final CachingDns DNS = new CachingDns();
+
+    private static OkHttpClient baseClient;
+    private static Dispatcher apiDispatcher;
+    private static Dispatcher imageDispatcher;
+    private static HostConcurrencyLimiter apiHostLimiter;
+    private static HostConcurrencyLimiter imageHostLimiter;
+
+    private HttpCore() {
+    }
+
+    /**
+     * @return the resolver used by all clients created by this class
+     */
+    @NonNull
+    public static CachingDns getDns() {
+        return DNS;
+    }
+
+    @NonNull
+    public static synchronized OkHttpClient getBaseClient() {
+        if (baseClient == null) {
+            baseClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(
+                            MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    // HTTP/2 is negotiated through ALPN and multiplexes all calls to a host over
+                    // a single connection, HTTP/1.1 is the fallback for hosts without it
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .retryOnConnectionFailure(true)
+                    .dns(DNS)
+                    .build();
+
+            apiDispatcher = newDispatcher(API_MAX_REQUESTS, API_MAX_REQUESTS_PER_HOST);
+            imageDispatcher = newDispatcher(IMAGE_MAX_REQUESTS, IMAGE_MAX_REQUESTS_PER_HOST);
+            apiHostLimiter = new HostConcurrencyLimiter(API_MAX_REQUESTS_PER_HOST);
+            imageHostLimiter = new HostConcurrencyLimiter(IMAGE_MAX_REQUESTS_PER_HOST);
+        }
+        return baseClient;
+    }
+
+    /**
+     * @return a builder for extractor (API) traffic, sharing the connection pool with all other
+     *         clients created by this class
+     */
+    @NonNull
+    public static OkHttpClient.Builder newApiClientBuilder() {
+        final OkHttpClient.Builder builder = getBaseClient().newBuilder();
+        synchronized (HttpCore.class) {
+            return builder
+                    .dispatcher(apiDispatcher)
+                    .addInterceptor(apiHostLimiter)
+                    .eventListenerFactory(NetworkEventRecorder.factory(API_CLIENT));
+        }
+    }
+
+    /**
+     * @return a builder for image traffic, sharing the connection pool with all other clients
+     *         created by this class
+     */
+    @NonNull
+    public static OkHttpClient.Builder newImageClientBuilder() {
+        final OkHttpClient.Builder builder = getBaseClient().newBuilder();
+        synchronized (HttpCore.class) {
+            return builder
+                    .dispatcher(imageDispatcher)
+                    .addInterceptor(imageHostLimiter)
+                    .eventListenerFactory(NetworkEventRecorder.factory(IMAGE_CLIENT));
+        }
+    }
+
+    /**
+     * @return a builder for large file downloads, sharing the connection pool with all other
+     *         clients created by this class. It only speaks HTTP/1.1: parallel range requests
+     *         must each get their own TCP connection instead of being multiplexed onto one.
+     */
+    @NonNull
+    public static OkHttpClient.Builder newDownloadClientBuilder() {
+        return getBaseClient().newBuilder()
+                .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+                .eventListenerFactory(NetworkEventRecorder.factory(DOWNLOAD_CLIENT));
+    }
+
+    private static Dispatcher newDispatcher(final int maxRequests, final int maxRequestsPerHost) {
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+}
@@ -0,0 +1,223 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Records where the time of each OkHttp call goes into {@link MetricsRegistry} histograms named
+ * {@code net.<client>.<host>.<endpoint>.<phase>}, with phases {@code dns}, {@code connect},
+ * {@code tls}, {@code ttfb} (request sent to first response byte), {@code body} and
+ * {@code total}, all in milliseconds.
+ * <br>
+ * Body transfers and latencies are also fed to the {@link BandwidthEstimator}. Latency samples
+ * are taken where the server adds no think time: the TCP handshake of every new connection and
+ * the time to first byte of image calls, which CDNs answer from cache. API calls wait for the
+ * server to build the response, so their time to first byte says little about the network.
+ * <br>
+ * One instance is created per call by the {@link #factory(String)}, so no synchronization is
+ * needed: OkHttp delivers the events of a call sequentially.
+ */
+public final class NetworkEventRecorder extends EventListener {
+
+    private final MetricsRegistry registry = MetricsRegistry.getInstance();
+    private final BandwidthEstimator bandwidthEstimator = BandwidthEstimator.getInstance();
+    private final String prefix;
+    private final boolean ttfbIsLatency;
+
+    private long callStartNanos;
+    private long dnsStartNanos;
+    private long connectStartNanos;
+    private long secureConnectStartNanos;
+    private long requestStartNanos;
+    private long responseBodyStartNanos;
+    private boolean transferActive;
+
+    private NetworkEventRecorder(final String client, final HttpUrl url) {
+        this.prefix = "net." + client + "." + url.host() + "." + endpointClassOf(url) + ".";
+        this.ttfbIsLatency = HttpCore.IMAGE_CLIENT.equals(client);
+    }
+
+    /**
+     * @param client the traffic class, e.g. {@code api} or {@code image}
+     * @return a factory creating a recorder for each call of a client
+     */
+    @NonNull
+    public static EventListener.Factory factory(@NonNull final String client) {
+        return call -> new NetworkEventRecorder(client, call.request().url());
+    }
+
+    /**
+     * Groups URLs into a small set of endpoint classes, so that the number of metric series
+     * stays bounded.
+     */
+    @NonNull
+    static String endpointClassOf(@NonNull final HttpUrl url) {
+        final List<String> segments = url.pathSegments();
+        final String first = segments.isEmpty() ? "" : segments.get(0);
+        if ("youtubei".equals(first) && segments.size() >= 3) {
+            return segments.get(2); // browse, next, player, search, ...
+        }
+        switch (first) {
+            case "":
+                return "root";
+            case "vi":
+            case "vi_webp":
+            case "an_webp":
+                return "thumbnail";
+            case "watch":
+            case "shorts":
+                return "watch";
+            case "results":
+                return "search";
+            case "feeds":
+            case "feed":
+                return "feed";
+            case "channel":
+            case "c":
+            case "user":
+                return "channel";
+            default:
+                if (first.startsWith("@")) {
+                    return "channel";
+                } else if (first.startsWith("ytc")) {
+                    return "avatar";
+                }
+                return "other";
+        }
+    }
+
+    @Override
+    public void callStart(@NonNull final Call call) {
+        callStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(@NonNull final Call call, @NonNull final String domainName) {
+        dnsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(@NonNull final Call call, @NonNull final String domainName,
+                       @NonNull final List<InetAddress> inetAddressList) {
+        recordSince("dns", dnsStartNanos);
+    }
+
+    @Override
+    public void connectStart(@NonNull final Call call,
+                             @NonNull final InetSocketAddress inetSocketAddress,
+                             @NonNull final Proxy proxy) {
+        connectStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(@NonNull final Call call) {
+        secureConnectStartNanos = System.nanoTime();
+        // the TCP handshake took one round trip
+        onLatencySince(connectStartNanos);
+    }
+
+    @Override
+    public void secureConnectEnd(@NonNull final Call call, @Nullable final Handshake handshake) {
+        recordSince("tls", secureConnectStartNanos);
+    }
+
+    @Override
+    public void connectEnd(@NonNull final Call call,
+                           @NonNull final InetSocketAddress inetSocketAddress,
+                           @NonNull final Proxy proxy, @Nullable final Protocol protocol) {
+        recordSince("connect", connectStartNanos);
+        if (secureConnectStartNanos == 0) {
+            onLatencySince(connectStartNanos); // plain TCP, the handshake was the whole connect
+        }
+    }
+
+    @Override
+    public void requestHeadersStart(@NonNull final Call call) {
+        requestStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull final Call call) {
+        final long ttfb = recordSince("ttfb", requestStartNanos);
+        if (ttfb >= 0 && ttfbIsLatency) {
+            bandwidthEstimator.onLatency(ttfb);
+        }
+    }
+
+    @Override
+    public void responseBodyStart(@NonNull final Call call) {
+        responseBodyStartNanos = System.nanoTime();
+        transferActive = true;
+        bandwidthEstimator.onTransferStart();
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull final Call call, final long byteCount) {
+        recordSince("body", responseBodyStartNanos);
+        registry.counter(prefix + "bytes").addAndGet(byteCount);
+        if (transferActive) {
+            transferActive = false;
+            bandwidthEstimator.onTransferEnd(byteCount);
+        }
+    }
+
+    @Override
+    public void cacheHit(@NonNull final Call call, @NonNull final Response response) {
+        registry.counter(prefix + "cache_hit").incrementAndGet();
+    }
+
+    @Override
+    public void cacheConditionalHit(@NonNull final Call call,
+                                    @NonNull final Response cachedResponse) {
+        registry.counter(prefix + "cache_revalidated").incrementAndGet();
+    }
+
+    @Override
+    public void callEnd(@NonNull final Call call) {
+        recordSince("total", callStartNanos);
+    }
+
+    @Override
+    public void callFailed(@NonNull final Call call, @NonNull final IOException ioe) {
+        registry.counter(prefix + "failed").incrementAndGet();
+        if (transferActive) {
+            transferActive = false;
+            bandwidthEstimator.onTransferAborted();
+        }
+    }
+
+    private void onLatencySince(final long startNanos) {
+        if (startNanos != 0) {
+            bandwidthEstimator.onLatency(
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    /**
+     * @return the recorded duration in milliseconds, or -1 if the phase never started
+     */
+    private long recordSince(final String phase, final long startNanos) {
+        if (startNanos == 0) {
+            return -1;
+        }
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        registry.histogram(prefix + phase).record(millis);
+        return millis;
+    }
+}
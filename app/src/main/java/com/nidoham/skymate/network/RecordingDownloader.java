@@ -0,0 +1,53 @@
+package com.nidoham.skymate.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.extractor.downloader.Downloader;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link Downloader} which passes all requests on to another one and records every request and
+ * its response into a fixture file, for {@link ReplayDownloader} to play back later.
+ */
+public final class RecordingDownloader extends Downloader implements Closeable {
+    private static final String TAG = RecordingDownloader.class.getSimpleName();
+
+    private final Downloader delegate;
+    private final DownloaderFixture.Writer writer;
+
+    /**
+     * @param delegate the downloader which actually executes requests
+     * @param fixture  the file to record into, replaced if it already exists
+     */
+    public RecordingDownloader(@NonNull final Downloader delegate, @NonNull final File fixture)
+            throws IOException {
+        this.delegate = delegate;
+        this.writer = new DownloaderFixture.Writer(fixture);
+    }
+
+    @Override
+    public Response execute(@NonNull final Request request)
+            throws IOException, ReCaptchaException {
+        final Response response = delegate.execute(request);
+        try {
+            writer.append(request, response);
+        } catch (final IOException e) {
+            // a broken recording must not break the app while recording
+            Log.w(TAG, "Could not record response of " + request.url(), e);
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,140 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.extractor.downloader.Downloader;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link Downloader} which answers requests from a fixture recorded by
+ * {@link RecordingDownloader}, without any network access, simulating the latency and bandwidth
+ * of a {@link Profile}.
+ * <br>
+ * Requests are matched by method, URL and request body; if no recording matches exactly, one with
+ * the same method and URL is used, since request bodies may contain values which change between
+ * runs. When a request was recorded several times, the responses are replayed in recorded order
+ * and the last one is repeated afterwards, so that benchmarks can loop over the same fixture.
+ */
+public final class ReplayDownloader extends Downloader {
+
+    /**
+     * Simulated network conditions: a fixed latency per request plus the time needed to transfer
+     * the response body.
+     */
+    public static final class Profile {
+        public static final Profile INSTANT = new Profile(0, 0);
+        public static final Profile WIFI = new Profile(20, 5_000_000);
+        public static final Profile LTE = new Profile(60, 1_500_000);
+        public static final Profile SLOW_3G = new Profile(400, 50_000);
+
+        final long latencyMillis;
+        final long bytesPerSecond;
+
+        /**
+         * @param latencyMillis  delay before each response
+         * @param bytesPerSecond simulated bandwidth, 0 for unlimited
+         */
+        public Profile(final long latencyMillis, final long bytesPerSecond) {
+            this.latencyMillis = latencyMillis;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        /**
+         * @param name one of {@code instant}, {@code wifi}, {@code lte} or {@code slow_3g}
+         * @return the matching profile, or {@link #INSTANT} for unknown names
+         */
+        @NonNull
+        public static Profile forName(@NonNull final String name) {
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "wifi":
+                    return WIFI;
+                case "lte":
+                    return LTE;
+                case "slow_3g":
+                    return SLOW_3G;
+                default:
+                    return INSTANT;
+            }
+        }
+
+        long delayMillisFor(final long bodyBytes) {
+            return bytesPerSecond <= 0
+                    ? latencyMillis : latencyMillis + bodyBytes * 1000 / bytesPerSecond;
+        }
+    }
+
+    private static final class Recordings {
+        final List<DownloaderFixture.Entry> entries = new ArrayList<>();
+        int next;
+
+        synchronized DownloaderFixture.Entry nextEntry() {
+            final DownloaderFixture.Entry entry = entries.get(next);
+            if (next < entries.size() - 1) {
+                next++;
+            }
+            return entry;
+        }
+    }
+
+    private final Map<String, Recordings> exactRecordings = new HashMap<>();
+    private final Map<String, Recordings> urlRecordings = new HashMap<>();
+    private final Profile profile;
+
+    /**
+     * @param fixture a file written by {@link RecordingDownloader}
+     * @param profile the network conditions to simulate
+     */
+    public ReplayDownloader(@NonNull final File fixture, @NonNull final Profile profile)
+            throws IOException {
+        this.profile = profile;
+        for (final DownloaderFixture.Entry entry : DownloaderFixture.read(fixture)) {
+            exactRecordings.computeIfAbsent(entry.exactKey(), key -> new Recordings())
+                    .entries.add(entry);
+            urlRecordings.computeIfAbsent(entry.urlKey(), key -> new Recordings())
+                    .entries.add(entry);
+        }
+    }
+
+    /**
+     * @return the number of distinct requests in the fixture
+     */
+    public int getRecordedRequestCount() {
+        return exactRecordings.size();
+    }
+
+    @Override
+    public Response execute(@NonNull final Request request) throws IOException {
+        final String urlKey = request.httpMethod() + ' ' + request.url();
+        Recordings recordings = exactRecordings.get(
+                urlKey + '\n' + DownloaderFixture.bodyHashOf(request.dataToSend()));
+        if (recordings == null) {
+            recordings = urlRecordings.get(urlKey);
+        }
+        if (recordings == null) {
+            throw new IOException("No recorded response for " + urlKey);
+        }
+
+        final DownloaderFixture.Entry entry = recordings.nextEntry();
+        // the length was recorded, so replaying does not allocate anything per request
+        final long delayMillis = profile.delayMillisFor(entry.bodyBytes);
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Replay of " + request.url() + " interrupted");
+            }
+        }
+        return entry.response;
+    }
+}
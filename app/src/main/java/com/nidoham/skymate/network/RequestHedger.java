@@ -0,0 +1,278 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.nidoham.skymate.metrics.Histogram;
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Executes requests with hedging: if an idempotent request has no response after the configured
+ * percentile of the latencies observed for its host and endpoint, a second copy is sent, the
+ * first response to arrive is used and the other call is cancelled.
+ * <br>
+ * The share of requests which may be hedged is bounded by a budget, so that the extra traffic
+ * stays small; by construction only the slowest requests are hedged, which are the ones making
+ * up the tail latency. A hedge also needs a permit of the {@link HostRateLimiter}, so hedging
+ * never pushes a host beyond its rate; without one the request is simply not hedged.
+ * <br>
+ * Hedges are sent over connections of their own: multiplexed onto the HTTP/2 connection of the
+ * call they hedge, they would suffer from the same congestion or packet loss which likely made
+ * that call slow in the first place.
+ */
+public final class RequestHedger {
+
+    public static final double DEFAULT_PERCENTILE = 95;
+    public static final double DEFAULT_BUDGET = 0.05;
+
+    /** Below this many latency samples for an endpoint its percentiles mean little. */
+    private static final long MIN_SAMPLES = 20;
+    private static final long MIN_DELAY_MILLIS = 50;
+    private static final int HEDGE_MAX_IDLE_CONNECTIONS = 2;
+    private static final long HEDGE_KEEP_ALIVE_MINUTES = 1;
+
+    /**
+     * Innertube endpoints which only read data. They are called with POST, but repeating them has
+     * no side effects, and they are what kiosks and search are loaded from.
+     */
+    private static final Set<String> READ_ONLY_INNERTUBE_ENDPOINTS =
+            Set.of("browse", "search", "next");
+
+    private final OkHttpClient client;
+    private final OkHttpClient raceClient;
+    private final OkHttpClient hedgeClient;
+    private final String metricsClient;
+    @Nullable
+    private final HostRateLimiter rateLimiter;
+    private final double percentile;
+    private final double budget;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private volatile boolean enabled = true;
+
+    /**
+     * @param client        the client to execute requests with
+     * @param metricsClient the traffic class the client records its latencies as, see
+     *                      {@link NetworkEventRecorder#factory(String)}
+     * @param rateLimiter   the limiter to take a permit from for each hedge, or {@code null} if
+     *                      hedges are not rate limited
+     * @param percentile    the latency percentile (0-100) after which a request is hedged
+     * @param budget        the maximum share (0-1) of requests which may be hedged
+     */
+    public RequestHedger(@NonNull final OkHttpClient client, @NonNull final String metricsClient,
+                         @Nullable final HostRateLimiter rateLimiter, final double percentile,
+                         final double budget) {
+        this.client = client;
+        // the calls of a race are enqueued, so they get a dispatcher without per-host limits,
+        // which the client's HostConcurrencyLimiter already enforces
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Integer.MAX_VALUE);
+        dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+        this.raceClient = client.newBuilder()
+                .dispatcher(dispatcher)
+                .build();
+        this.hedgeClient = raceClient.newBuilder()
+                .connectionPool(new ConnectionPool(HEDGE_MAX_IDLE_CONNECTIONS,
+                        HEDGE_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .build();
+        this.metricsClient = metricsClient;
+        this.rateLimiter = rateLimiter;
+        this.percentile = percentile;
+        this.budget = budget;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return how many hedged requests were answered by the hedge rather than the original
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * Like {@code client.newCall(request).execute()}, but possibly hedged.
+     */
+    @NonNull
+    public Response execute(@NonNull final Request request) throws IOException {
+        requestCount.incrementAndGet();
+        final long delayMillis = enabled && isIdempotent(request)
+                ? hedgeDelayMillis(request.url()) : -1;
+        if (delayMillis < 0) {
+            return client.newCall(request).execute();
+        }
+
+        final Race race = new Race();
+        final Call primary = raceClient.newCall(request);
+        race.start(primary);
+        final Response early = race.await(delayMillis);
+        if (early != null || !tryTakeBudget()) {
+            return early != null ? early : race.await(-1);
+        }
+        if (rateLimiter != null && !rateLimiter.tryAcquire(request.url().host())) {
+            hedgeCount.decrementAndGet(); // give the budget back
+            MetricsRegistry.getInstance().counter("hedge." + metricsClient + ".rate_limited")
+                    .incrementAndGet();
+            return race.await(-1);
+        }
+
+        MetricsRegistry.getInstance().counter("hedge." + metricsClient + ".sent")
+                .incrementAndGet();
+        race.start(hedgeClient.newCall(request));
+        final Response response = race.await(-1);
+        if (race.winner != primary) {
+            hedgeWinCount.incrementAndGet();
+            MetricsRegistry.getInstance().counter("hedge." + metricsClient + ".won")
+                    .incrementAndGet();
+        }
+        return response;
+    }
+
+    static boolean isIdempotent(@NonNull final Request request) {
+        final String method = request.method();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return true;
+        }
+        final List<String> segments = request.url().pathSegments();
+        return "POST".equals(method) && segments.size() >= 3
+                && "youtubei".equals(segments.get(0))
+                && READ_ONLY_INNERTUBE_ENDPOINTS.contains(segments.get(2));
+    }
+
+    /**
+     * @return the delay after which to hedge a request to the given URL, or -1 if too little is
+     *         known about the endpoint's latency yet
+     */
+    private long hedgeDelayMillis(@NonNull final HttpUrl url) {
+        final Histogram ttfb = MetricsRegistry.getInstance().histogram("net." + metricsClient
+                + "." + url.host() + "." + NetworkEventRecorder.endpointClassOf(url) + ".ttfb");
+        if (ttfb.getCount() < MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max(MIN_DELAY_MILLIS, ttfb.getPercentile(percentile));
+    }
+
+    private boolean tryTakeBudget() {
+        while (true) {
+            final long hedges = hedgeCount.get();
+            if (hedges + 1 > budget * requestCount.get()) {
+                return false;
+            }
+            if (hedgeCount.compareAndSet(hedges, hedges + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The calls for one request, of which the first to respond wins.
+     */
+    private static final class Race implements Callback {
+        private final List<Call> calls = new ArrayList<>();
+        private int pending;
+        @Nullable
+        private Call winner;
+        @Nullable
+        private Response response;
+        @Nullable
+        private IOException failure;
+
+        synchronized void start(final Call call) {
+            calls.add(call);
+            pending++;
+            call.enqueue(this);
+        }
+
+        @Override
+        public void onResponse(@NonNull final Call call, @NonNull final Response callResponse) {
+            synchronized (this) {
+                pending--;
+                if (winner == null) {
+                    winner = call;
+                    response = callResponse;
+                    notifyAll();
+                    return;
+                }
+            }
+            callResponse.close(); // lost the race
+        }
+
+        @Override
+        public void onFailure(@NonNull final Call call, @NonNull final IOException e) {
+            synchronized (this) {
+                pending--;
+                if (failure == null && winner == null) {
+                    failure = e;
+                }
+                notifyAll();
+            }
+        }
+
+        /**
+         * @param timeoutMillis how long to wait for a response, or -1 to wait until all calls
+         *                      are done
+         * @return the winning response, or {@code null} if the timeout elapsed first
+         * @throws IOException the first failure, if all calls failed
+         */
+        @Nullable
+        synchronized Response await(final long timeoutMillis) throws IOException {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            try {
+                while (winner == null && pending > 0) {
+                    if (timeoutMillis < 0) {
+                        wait();
+                    } else {
+                        final long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            return null;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAllExcept(null);
+                throw new InterruptedIOException("Interrupted while waiting for response");
+            }
+
+            if (winner == null) {
+                throw failure != null ? failure : new IOException("No call was started");
+            }
+            cancelAllExcept(winner);
+            return response;
+        }
+
+        private void cancelAllExcept(@Nullable final Call keep) {
+            for (final Call call : calls) {
+                if (call != keep) {
+                    call.cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Reads response bodies into strings through a small pool of reusable byte arrays.
+ * <br>
+ * {@link ResponseBody#string()} first copies the whole body into a fresh byte array and then
+ * decodes it; with multi-megabyte innertube JSON fetched page after page that is a lot of
+ * short-lived garbage. Here the raw bytes land in a pooled array, are decoded once into the final
+ * {@link String}, and the array goes back to the pool for the next response.
+ * <br>
+ * The bytes are collected before decoding instead of being decoded chunk by chunk as they
+ * arrive: {@code new String(byte[], ...)} decodes in a single native pass, while a streaming
+ * {@link java.nio.charset.CharsetDecoder} is slower and needs its output copied once more into
+ * the final string.
+ */
+public final class ResponseBodyReader {
+
+    /**
+     * Bodies larger than this are refused; the biggest innertube responses are a few MiB.
+     */
+    public static final long DEFAULT_MAX_BODY_SIZE = 16L * 1024L * 1024L;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    // larger arrays are dropped instead of pooled, so the pool retains at most
+    // POOL_CAPACITY * MAX_POOLED_BUFFER_SIZE bytes
+    private static final int MAX_POOLED_BUFFER_SIZE = 2 * 1024 * 1024;
+    private static final int POOL_CAPACITY = 3;
+
+    private final ArrayBlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(POOL_CAPACITY);
+    private final long maxBodySize;
+    private final AtomicLong totalBytesRead = new AtomicLong();
+    private final AtomicLong bufferAllocations = new AtomicLong();
+    // bodies of unknown length (e.g. gzip-encoded ones) are sized like the previous one, since
+    // consecutive responses of an API tend to be of similar size
+    private volatile int unknownLengthHint = INITIAL_BUFFER_SIZE;
+
+    public ResponseBodyReader() {
+        this(DEFAULT_MAX_BODY_SIZE);
+    }
+
+    public ResponseBodyReader(final long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * A decoded body together with the number of raw bytes read for it.
+     */
+    public static final class DecodedBody {
+        @NonNull
+        public final String text;
+        public final long byteCount;
+
+        DecodedBody(@NonNull final String text, final long byteCount) {
+            this.text = text;
+            this.byteCount = byteCount;
+        }
+    }
+
+    /**
+     * Reads and decodes the whole body. The body is not closed.
+     *
+     * @param body the body to read
+     * @return the decoded body
+     * @throws IOException if reading fails or the body is larger than the configured maximum
+     */
+    @NonNull
+    public DecodedBody read(@NonNull final ResponseBody body) throws IOException {
+        final long contentLength = body.contentLength();
+        if (contentLength > maxBodySize) {
+            throw new IOException("Response body too large: " + contentLength + " bytes");
+        }
+
+        final BufferedSource source = body.source();
+        byte[] buffer = acquire(contentLength > 0 ? (int) contentLength : unknownLengthHint);
+        try {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    // usually the body is complete, e.g. when the array was sized from the
+                    // Content-Length, so check before allocating a larger one
+                    if (source.exhausted()) {
+                        break;
+                    } else if (length >= maxBodySize) {
+                        throw new IOException(
+                                "Response body larger than " + maxBodySize + " bytes");
+                    }
+                    buffer = grow(buffer, length, source.getBuffer().size());
+                }
+
+                final int read = source.read(buffer, length, buffer.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+                if (length > maxBodySize) {
+                    throw new IOException(
+                            "Response body larger than " + maxBodySize + " bytes");
+                }
+            }
+
+            if (contentLength < 0) {
+                unknownLengthHint =
+                        Math.min(MAX_POOLED_BUFFER_SIZE, Math.max(INITIAL_BUFFER_SIZE, length));
+            }
+            totalBytesRead.addAndGet(length);
+            return new DecodedBody(decode(buffer, length, body.contentType()), length);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * @return the number of raw body bytes read by this reader since its creation
+     */
+    public long getTotalBytesRead() {
+        return totalBytesRead.get();
+    }
+
+    /**
+     * @return how many times a new byte array had to be allocated instead of taken from the pool
+     */
+    public long getBufferAllocations() {
+        return bufferAllocations.get();
+    }
+
+    private byte[] acquire(final int minSize) {
+        for (int i = 0; i < POOL_CAPACITY; i++) {
+            final byte[] pooled = pool.poll();
+            if (pooled == null) {
+                break;
+            } else if (pooled.length >= minSize) {
+                return pooled;
+            }
+            release(pooled); // to the end of the queue, to look at the next one
+        }
+        bufferAllocations.incrementAndGet();
+        return new byte[(int) Math.min(Math.max(minSize, INITIAL_BUFFER_SIZE), maxBodySize)];
+    }
+
+    private void release(final byte[] buffer) {
+        if (buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+            pool.offer(buffer); // silently dropped if the pool is full
+        }
+    }
+
+    private byte[] grow(final byte[] buffer, final int length, final long buffered) {
+        final byte[] grown = acquire((int) Math.min(
+                Math.max(2L * buffer.length, length + buffered), maxBodySize));
+        System.arraycopy(buffer, 0, grown, 0, length);
+        release(buffer);
+        return grown;
+    }
+
+    private static String decode(final byte[] buffer, final int length,
+                                 final MediaType contentType) {
+        // a byte order mark always wins over the declared charset, as in ResponseBody.string()
+        if (length >= 3 && buffer[0] == (byte) 0xEF && buffer[1] == (byte) 0xBB
+                && buffer[2] == (byte) 0xBF) {
+            return new String(buffer, 3, length - 3, StandardCharsets.UTF_8);
+        } else if (length >= 2 && buffer[0] == (byte) 0xFE && buffer[1] == (byte) 0xFF) {
+            return new String(buffer, 2, length - 2, StandardCharsets.UTF_16BE);
+        } else if (length >= 2 && buffer[0] == (byte) 0xFF && buffer[1] == (byte) 0xFE) {
+            return new String(buffer, 2, length - 2, StandardCharsets.UTF_16LE);
+        }
+
+        final Charset charset = contentType == null
+                ? StandardCharsets.UTF_8
+                : contentType.charset(StandardCharsets.UTF_8);
+        return new String(buffer, 0, length, charset);
+    }
+}
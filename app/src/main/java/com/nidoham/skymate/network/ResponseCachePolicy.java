@@ -0,0 +1,78 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+
+/**
+ * How long a cached response may be served past its freshness lifetime, per request type.
+ * <br>
+ * Responses older than {@link #getMaxStaleSeconds()} are not thrown away: OkHttp revalidates
+ * them with {@code If-None-Match}/{@code If-Modified-Since}, so an unchanged resource only costs
+ * the headers of a {@code 304}.
+ */
+public enum ResponseCachePolicy {
+    /**
+     * Kiosk pages (trending, live, ...) change a few times an hour.
+     */
+    KIOSK(TimeUnit.MINUTES.toSeconds(10)),
+    /**
+     * Channel pages, tabs and RSS feeds.
+     */
+    CHANNEL(TimeUnit.MINUTES.toSeconds(30)),
+    /**
+     * Search result pages, which users often repeat within a session.
+     */
+    SEARCH(TimeUnit.MINUTES.toSeconds(5)),
+    /**
+     * Watch pages and playlists: these carry expiring stream URLs, so always revalidate.
+     */
+    STREAM(0),
+    DEFAULT(0);
+
+    private final long maxStaleSeconds;
+    private final CacheControl cacheControl;
+
+    ResponseCachePolicy(final long maxStaleSeconds) {
+        this.maxStaleSeconds = maxStaleSeconds;
+        this.cacheControl = maxStaleSeconds > 0
+                ? new CacheControl.Builder()
+                        .maxStale((int) maxStaleSeconds, TimeUnit.SECONDS)
+                        .build()
+                : null;
+    }
+
+    public long getMaxStaleSeconds() {
+        return maxStaleSeconds;
+    }
+
+    /**
+     * @return the cache control to attach to the request, or {@code null} to leave OkHttp's
+     *         default behaviour (serve only fresh responses, revalidate otherwise)
+     */
+    public CacheControl getCacheControl() {
+        return cacheControl;
+    }
+
+    @NonNull
+    public static ResponseCachePolicy forUrl(@NonNull final HttpUrl url) {
+        final String path = url.encodedPath();
+        if (path.startsWith("/feed/") || path.contains("/kiosk")) {
+            return KIOSK;
+        } else if (path.startsWith("/channel/") || path.startsWith("/@")
+                || path.startsWith("/c/") || path.startsWith("/user/")
+                || path.startsWith("/feeds/videos.xml")) {
+            return CHANNEL;
+        } else if (path.startsWith("/results") || path.contains("/search")
+                || path.startsWith("/complete/")) {
+            return SEARCH;
+        } else if (path.startsWith("/watch") || path.startsWith("/playlist")
+                || path.startsWith("/shorts/")) {
+            return STREAM;
+        }
+        return DEFAULT;
+    }
+}
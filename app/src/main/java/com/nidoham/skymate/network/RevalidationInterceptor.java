@@ -0,0 +1,39 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which lets validated responses into the disk cache.
+ * <br>
+ * Many pages are served with {@code Cache-Control: no-store} even though they carry an
+ * {@code ETag} or {@code Last-Modified} validator. Such responses are rewritten to
+ * {@code no-cache}, which OkHttp stores but always revalidates before use, so a repeated load
+ * costs a conditional request instead of the whole body.
+ */
+public final class RevalidationInterceptor implements Interceptor {
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final Response response = chain.proceed(chain.request());
+        if (!"GET".equals(chain.request().method()) || response.code() != 200
+                || !response.cacheControl().noStore()) {
+            return response;
+        }
+
+        if (response.header("ETag") == null && response.header("Last-Modified") == null) {
+            return response; // nothing to revalidate with, keep it out of the cache
+        }
+
+        return response.newBuilder()
+                .header("Cache-Control", "no-cache")
+                .removeHeader("Pragma")
+                .removeHeader("Expires")
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent calls with the same key into a single execution.
+ * <br>
+ * The first caller for a key runs the loader, every caller arriving while it is still running
+ * blocks and receives the very same result (or an equivalent exception). Once the call completes
+ * the key is forgotten, so this is not a cache: later calls run the loader again.
+ * <br>
+ * If the first caller is interrupted (e.g. because the screen which needed the result went
+ * away), the callers waiting for it are not failed with its interruption: one of them runs the
+ * loader again, and the others wait for that call. This happens only once per call, so a second
+ * interruption fails all of them.
+ *
+ * @param <T> the type of the shared result, which must be safe to hand to several threads
+ */
+public final class SingleFlight<T> {
+
+    public interface Loader<T> {
+        T load() throws IOException, ReCaptchaException;
+    }
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight =
+            new ConcurrentHashMap<>();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public T execute(@NonNull final String key, @NonNull final Loader<T> loader)
+            throws IOException, ReCaptchaException {
+        return execute(key, loader, true);
+    }
+
+    private T execute(@NonNull final String key, @NonNull final Loader<T> loader,
+                      final boolean retryIfLeaderInterrupted)
+            throws IOException, ReCaptchaException {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            try {
+                return await(existing);
+            } catch (final LeaderInterruptedException e) {
+                if (retryIfLeaderInterrupted) {
+                    return execute(key, loader, false);
+                }
+                throw new IOException(e.getMessage(), e.getCause());
+            }
+        }
+
+        executedCount.incrementAndGet();
+        try {
+            final T result = loader.load();
+            inFlight.remove(key, future);
+            future.complete(result);
+            return result;
+        } catch (final Throwable e) {
+            // forget the key first, so that a retrying follower starts a new call
+            inFlight.remove(key, future);
+            future.completeExceptionally(isInterruption(e)
+                    ? new LeaderInterruptedException(e) : e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return how many calls actually ran their loader
+     */
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    /**
+     * @return how many calls were served by joining a call already in flight
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * A socket timeout is an {@link InterruptedIOException} too, but one every follower would
+     * likely run into again, so only actual thread interruptions count.
+     */
+    private static boolean isInterruption(final Throwable e) {
+        return Thread.currentThread().isInterrupted()
+                || e.getClass() == InterruptedIOException.class;
+    }
+
+    private static <T> T await(final CompletableFuture<T> future)
+            throws IOException, ReCaptchaException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for shared request");
+        } catch (final ExecutionException e) {
+            // wrap instead of rethrowing, so that each caller gets its own stack trace
+            final Throwable cause = e.getCause();
+            if (cause instanceof LeaderInterruptedException) {
+                throw (LeaderInterruptedException) cause;
+            } else if (cause instanceof ReCaptchaException) {
+                throw new ReCaptchaException(cause.getMessage(),
+                        ((ReCaptchaException) cause).getUrl());
+            } else if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Completes the shared future of a call whose leader was interrupted.
+     */
+    private static final class LeaderInterruptedException extends IOException {
+        LeaderInterruptedException(final Throwable cause) {
+            super("Interrupted while running shared request", cause);
+        }
+    }
+}
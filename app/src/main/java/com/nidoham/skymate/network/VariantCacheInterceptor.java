@@ -0,0 +1,49 @@
+package com.nidoham.skymate.network;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which makes the disk cache match entries by content variant as well as by
+ * URL.
+ * <br>
+ * The same URL returns different content depending on e.g. the restricted mode cookie, which
+ * the servers do not declare with {@code Vary}. Requests therefore carry the variant in the
+ * {@link #HEADER} header, which this interceptor removes before the request goes out and adds
+ * to the {@code Vary} header of the response. OkHttp then only uses a cached response for
+ * requests of the variant it was stored for, even with {@code max-stale}; a request of another
+ * variant goes to the network and its response replaces the cached one.
+ */
+public final class VariantCacheInterceptor implements Interceptor {
+
+    /**
+     * Request header holding the variant, e.g. {@link org.schabi.newpipe.util.ContentVariant}.
+     * It is never sent to the server.
+     */
+    public static final String HEADER = "X-Content-Variant";
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final Request request = chain.request();
+        if (request.header(HEADER) == null) {
+            return chain.proceed(request);
+        }
+
+        final Response response = chain.proceed(request.newBuilder().removeHeader(HEADER).build());
+        final String vary = response.header("Vary");
+        if ("*".equals(vary)) {
+            return response; // never cached anyway
+        }
+        return response.newBuilder()
+                // the cache reads the varying values from the request of the response
+                .request(request)
+                .header("Vary", vary == null || vary.isEmpty() ? HEADER : vary + ", " + HEADER)
+                .build();
+    }
+}
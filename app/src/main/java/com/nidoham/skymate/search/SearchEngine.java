@@ -0,0 +1,175 @@
+package com.nidoham.skymate.search;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+import com.nidoham.skymate.util.LoadScheduler;
+
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.Page;
+import org.schabi.newpipe.extractor.search.SearchInfo;
+import org.schabi.newpipe.util.ContentVariant;
+import org.schabi.newpipe.util.ExtractorHelper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+
+/**
+ * Entry point for searching: suggestions while typing, and result pages.
+ * <br>
+ * Suggestions are requested only once the input was unchanged for {@link #DEBOUNCE_MILLIS},
+ * and a request still running when the input changes again is cancelled. Past responses are
+ * kept in a {@link SuggestionTrie}, so that repeating a query, or typing further into one whose
+ * suggestions still match, shows suggestions immediately. Result pages are kept in a
+ * {@link SearchResultCache}, so that going back to a previous search does not load it again.
+ * <br>
+ * Suggestions and first result pages load with {@link LoadScheduler.Priority#VISIBLE} priority,
+ * further result pages with {@link LoadScheduler.Priority#PREFETCH}; callers only choose where
+ * to observe them.
+ */
+public final class SearchEngine {
+
+    static final long DEBOUNCE_MILLIS = 250;
+
+    private static final SearchEngine INSTANCE = new SearchEngine();
+
+    // one trie per service and content variant, since suggestions depend on both
+    private final Map<String, SuggestionTrie> tries = new HashMap<>();
+    private final SearchResultCache resultCache = new SearchResultCache();
+
+    private SearchEngine() {
+    }
+
+    public static SearchEngine getInstance() {
+        return INSTANCE;
+    }
+
+    @NonNull
+    private synchronized SuggestionTrie trieOf(final int serviceId) {
+        return tries.computeIfAbsent(ContentVariant.current() + ":" + serviceId,
+                key -> new SuggestionTrie());
+    }
+
+    /**
+     * @param input the text of the search field, on every change
+     * @return for each input, the suggestions for it: cached ones right away if available, and
+     *         else or afterwards the ones loaded after the debounce delay; failures to load are
+     *         ignored, so the observable does not terminate while the input keeps changing
+     */
+    @NonNull
+    public Observable<List<String>> suggestions(final int serviceId,
+                                                @NonNull final Observable<String> input) {
+        return input
+                .map(SearchQuery::normalize)
+                .distinctUntilChanged()
+                .switchMap(query -> suggestionsFor(serviceId, query));
+    }
+
+    @NonNull
+    private Observable<List<String>> suggestionsFor(final int serviceId,
+                                                    @NonNull final String query) {
+        if (query.isEmpty()) {
+            return Observable.just(Collections.emptyList());
+        }
+
+        final SuggestionTrie trie = trieOf(serviceId);
+        final SuggestionTrie.Match match = trie.get(query);
+        if (match != null && match.exact) {
+            MetricsRegistry.getInstance().counter("search.suggest.exact").incrementAndGet();
+            return Observable.just(match.suggestions);
+        }
+
+        final Observable<List<String>> remote = Observable
+                .timer(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)
+                .flatMapSingle(tick -> {
+                    final long startMillis = SystemClock.uptimeMillis();
+                    return ExtractorHelper.suggestionsFor(serviceId, query)
+                            .subscribeOn(LoadScheduler.getInstance()
+                                    .scheduler(null, LoadScheduler.Priority.VISIBLE))
+                            .doOnSuccess(suggestions -> {
+                                MetricsRegistry.getInstance().histogram("search.suggest.load")
+                                        .record(SystemClock.uptimeMillis() - startMillis);
+                                trie.put(query, suggestions);
+                            });
+                })
+                .onErrorResumeWith(Observable.empty());
+        if (match == null) {
+            MetricsRegistry.getInstance().counter("search.suggest.miss").incrementAndGet();
+            return remote;
+        }
+        MetricsRegistry.getInstance().counter("search.suggest.prefix").incrementAndGet();
+        return remote.startWithItem(match.suggestions);
+    }
+
+    /**
+     * @return the first page of results, from the cache if it was loaded recently
+     */
+    @NonNull
+    public Single<SearchInfo> search(@NonNull final SearchQuery query) {
+        return Single.defer(() -> {
+            final SearchInfo cached = resultCache.getFirstPage(query);
+            if (cached != null) {
+                MetricsRegistry.getInstance().counter("search.results.hit").incrementAndGet();
+                return Single.just(cached);
+            }
+            MetricsRegistry.getInstance().counter("search.results.miss").incrementAndGet();
+            return ExtractorHelper.searchFor(query.getServiceId(), query.getText(),
+                            query.getContentFilters(), query.getSortFilter())
+                    .subscribeOn(LoadScheduler.getInstance()
+                            .scheduler(null, LoadScheduler.Priority.VISIBLE))
+                    .doOnSuccess(info -> resultCache.putFirstPage(query, info));
+        });
+    }
+
+    /**
+     * @return the given page of results, from the cache if it was loaded recently
+     */
+    @NonNull
+    public Single<InfoItemsPage<InfoItem>> getMoreItems(@NonNull final SearchQuery query,
+                                                        @NonNull final Page page) {
+        return Single.defer(() -> {
+            final InfoItemsPage<InfoItem> cached = resultCache.getPage(query, page);
+            if (cached != null) {
+                MetricsRegistry.getInstance().counter("search.results.hit").incrementAndGet();
+                return Single.just(cached);
+            }
+            MetricsRegistry.getInstance().counter("search.results.miss").incrementAndGet();
+            return ExtractorHelper.getMoreSearchItems(query.getServiceId(), query.getText(),
+                            query.getContentFilters(), query.getSortFilter(), page)
+                    .subscribeOn(LoadScheduler.getInstance()
+                            .scheduler(null, LoadScheduler.Priority.PREFETCH))
+                    .doOnSuccess(items -> resultCache.putPage(query, page, items));
+        });
+    }
+
+    /**
+     * @param queries the submitted searches
+     * @return the first page of results of each search; a search still loading when the next
+     *         one is submitted is cancelled, and a failure terminates the observable
+     */
+    @NonNull
+    public Observable<SearchInfo> results(@NonNull final Observable<SearchQuery> queries) {
+        return queries
+                .distinctUntilChanged()
+                .switchMapSingle(this::search);
+    }
+
+    /**
+     * Forgets all cached suggestions and results, e.g. when the user clears their history.
+     */
+    public void clearCache() {
+        synchronized (this) {
+            tries.clear();
+        }
+        resultCache.clear();
+    }
+}
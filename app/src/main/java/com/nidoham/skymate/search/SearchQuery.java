@@ -0,0 +1,106 @@
+package com.nidoham.skymate.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A search as sent to a service: the query text together with its filters.
+ * <br>
+ * Two searches which only differ in case or whitespace are equal, so that they share cached
+ * results.
+ */
+public final class SearchQuery {
+
+    private final int serviceId;
+    @NonNull
+    private final String text;
+    @NonNull
+    private final String normalizedText;
+    @NonNull
+    private final List<String> contentFilters;
+    @NonNull
+    private final String sortFilter;
+
+    public SearchQuery(final int serviceId, @NonNull final String text,
+                       @Nullable final List<String> contentFilters,
+                       @Nullable final String sortFilter) {
+        this.serviceId = serviceId;
+        this.text = text.trim();
+        this.normalizedText = normalize(text);
+        this.contentFilters = contentFilters == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(contentFilters));
+        this.sortFilter = sortFilter == null ? "" : sortFilter;
+    }
+
+    public SearchQuery(final int serviceId, @NonNull final String text) {
+        this(serviceId, text, null, null);
+    }
+
+    /**
+     * @return the text lower-cased, with leading and trailing whitespace removed and inner
+     *         whitespace collapsed into single spaces
+     */
+    @NonNull
+    public static String normalize(@NonNull final String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    /**
+     * @return the text to send to the service, as typed apart from surrounding whitespace
+     */
+    @NonNull
+    public String getText() {
+        return text;
+    }
+
+    @NonNull
+    public String getNormalizedText() {
+        return normalizedText;
+    }
+
+    @NonNull
+    public List<String> getContentFilters() {
+        return contentFilters;
+    }
+
+    @NonNull
+    public String getSortFilter() {
+        return sortFilter;
+    }
+
+    @Override
+    public boolean equals(@Nullable final Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof SearchQuery)) {
+            return false;
+        }
+        final SearchQuery other = (SearchQuery) o;
+        return serviceId == other.serviceId
+                && normalizedText.equals(other.normalizedText)
+                && contentFilters.equals(other.contentFilters)
+                && sortFilter.equals(other.sortFilter);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(serviceId, normalizedText, contentFilters, sortFilter);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return serviceId + ":" + normalizedText + ":" + contentFilters + ":" + sortFilter;
+    }
+}
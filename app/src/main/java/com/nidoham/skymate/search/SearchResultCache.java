@@ -0,0 +1,85 @@
+package com.nidoham.skymate.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.Page;
+import org.schabi.newpipe.extractor.search.SearchInfo;
+import org.schabi.newpipe.service.ServiceHelper;
+import org.schabi.newpipe.util.ContentVariant;
+
+import java.util.Arrays;
+
+/**
+ * The result pages of the most recent searches, keyed on the {@link SearchQuery} (so on its
+ * normalized text and filters), the page and the {@link ContentVariant}. Entries expire like
+ * other cached infos, after {@link ServiceHelper#getCacheExpirationMillis(int)}.
+ */
+final class SearchResultCache {
+
+    static final int MAX_PAGES = 48;
+
+    private static final class CacheData {
+        final Object result;
+        final long expireTimestamp;
+
+        CacheData(final Object result, final long expireTimestamp) {
+            this.result = result;
+            this.expireTimestamp = expireTimestamp;
+        }
+    }
+
+    private final LruCache<String, CacheData> lruCache = new LruCache<>(MAX_PAGES);
+
+    @NonNull
+    private static String keyOf(@NonNull final SearchQuery query, @Nullable final Page page) {
+        final String pageKey = page == null ? "" : page.getUrl() + ":" + page.getId()
+                + ":" + Arrays.hashCode(page.getBody());
+        return ContentVariant.current() + ":" + query + ":" + pageKey;
+    }
+
+    @Nullable
+    SearchInfo getFirstPage(@NonNull final SearchQuery query) {
+        return (SearchInfo) get(keyOf(query, null));
+    }
+
+    void putFirstPage(@NonNull final SearchQuery query, @NonNull final SearchInfo info) {
+        put(query, keyOf(query, null), info);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    InfoItemsPage<InfoItem> getPage(@NonNull final SearchQuery query, @NonNull final Page page) {
+        return (InfoItemsPage<InfoItem>) get(keyOf(query, page));
+    }
+
+    void putPage(@NonNull final SearchQuery query, @NonNull final Page page,
+                 @NonNull final InfoItemsPage<InfoItem> items) {
+        put(query, keyOf(query, page), items);
+    }
+
+    void clear() {
+        lruCache.evictAll();
+    }
+
+    @Nullable
+    private Object get(@NonNull final String key) {
+        final CacheData data = lruCache.get(key);
+        if (data == null) {
+            return null;
+        } else if (System.currentTimeMillis() > data.expireTimestamp) {
+            lruCache.remove(key);
+            return null;
+        }
+        return data.result;
+    }
+
+    private void put(@NonNull final SearchQuery query, @NonNull final String key,
+                     @NonNull final Object result) {
+        lruCache.put(key, new CacheData(result, System.currentTimeMillis()
+                + ServiceHelper.getCacheExpirationMillis(query.getServiceId())));
+    }
+}
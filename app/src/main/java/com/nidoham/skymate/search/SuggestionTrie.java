@@ -0,0 +1,125 @@
+package com.nidoham.skymate.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Past suggestion responses, indexed by the prefixes of their queries.
+ * <br>
+ * Besides exact lookups, this answers a query which extends a cached one, e.g. {@code "rick a"}
+ * after {@code "rick"} was cached, with the cached suggestions which still match. Such an answer
+ * is only provisional, since the service might return suggestions the shorter query did not, but
+ * it can be shown while typing instead of an empty list.
+ * <br>
+ * At most {@link #MAX_ENTRIES} responses are kept, dropping the least recently used ones.
+ * Queries are expected to be normalized with {@link SearchQuery#normalize(String)}.
+ */
+final class SuggestionTrie {
+
+    static final int MAX_ENTRIES = 256;
+
+    static final class Match {
+        @NonNull
+        final List<String> suggestions;
+        /** Whether the suggestions are the response for exactly the looked up query. */
+        final boolean exact;
+
+        Match(@NonNull final List<String> suggestions, final boolean exact) {
+            this.suggestions = suggestions;
+            this.exact = exact;
+        }
+    }
+
+    private static final class Node {
+        @Nullable
+        final Node parent;
+        final char key;
+        final Map<Character, Node> children = new HashMap<>();
+        @Nullable
+        List<String> suggestions;
+
+        Node(@Nullable final Node parent, final char key) {
+            this.parent = parent;
+            this.key = key;
+        }
+    }
+
+    private final Node root = new Node(null, '\0');
+    // nodes holding suggestions, least recently used first
+    private final LinkedHashMap<String, Node> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    synchronized void put(@NonNull final String query, @NonNull final List<String> suggestions) {
+        Node node = root;
+        for (int i = 0; i < query.length(); i++) {
+            final Node parent = node;
+            final char c = query.charAt(i);
+            node = parent.children.computeIfAbsent(c, key -> new Node(parent, key));
+        }
+        node.suggestions = Collections.unmodifiableList(new ArrayList<>(suggestions));
+        entries.put(query, node);
+
+        final Iterator<Node> iterator = entries.values().iterator();
+        while (entries.size() > MAX_ENTRIES) {
+            final Node eldest = iterator.next();
+            iterator.remove();
+            eldest.suggestions = null;
+            prune(eldest);
+        }
+    }
+
+    /**
+     * @return the response for the query, or else the matching suggestions of the response for
+     *         its longest cached prefix, or {@code null} if neither exists or none of those match
+     */
+    @Nullable
+    synchronized Match get(@NonNull final String query) {
+        final Node exact = entries.get(query); // marks the entry as used
+        if (exact != null) {
+            return new Match(exact.suggestions, true);
+        }
+
+        Node node = root;
+        Node deepestWithSuggestions = null;
+        for (int i = 0; i < query.length() && node != null; i++) {
+            node = node.children.get(query.charAt(i));
+            if (node != null && node.suggestions != null) {
+                deepestWithSuggestions = node;
+            }
+        }
+        if (deepestWithSuggestions == null) {
+            return null;
+        }
+
+        final List<String> matching = new ArrayList<>();
+        for (final String suggestion : deepestWithSuggestions.suggestions) {
+            if (SearchQuery.normalize(suggestion).startsWith(query)) {
+                matching.add(suggestion);
+            }
+        }
+        return matching.isEmpty() ? null : new Match(matching, false);
+    }
+
+    synchronized void clear() {
+        root.children.clear();
+        entries.clear();
+    }
+
+    /**
+     * Removes the node and its ancestors as long as they hold neither suggestions nor children.
+     */
+    private static void prune(@NonNull final Node leaf) {
+        Node node = leaf;
+        while (node.parent != null && node.suggestions == null && node.children.isEmpty()) {
+            node.parent.children.remove(node.key);
+            node = node.parent;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.nidoham.skymate.util;
+
+import androidx.annotation.NonNull;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+import com.nidoham.skymate.network.BandwidthEstimator;
+
+import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.kiosk.KioskList;
+import org.schabi.newpipe.util.InfoLoader;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
+
+/**
+ * Resolves the kiosks shown by the home tabs and loads their first pages ahead of time, so that
+ * switching to a tab finds its page in the {@link InfoLoader} caches.
+ * <br>
+ * Kiosk ids differ between services and extractor versions, so each tab lists the ids it can
+ * show in order of preference, and falls back to the service's default kiosk if none of them
+ * is available.
+ */
+public final class KioskPreloader {
+
+    public enum HomeTab {
+        LIVE("live"),
+        TRENDING(),
+        TV("trending_movies_and_shows", "trending_podcasts_episodes"),
+        GAMES("trending_gaming");
+
+        private final String[] preferredKioskIds;
+
+        HomeTab(final String... preferredKioskIds) {
+            this.preferredKioskIds = preferredKioskIds;
+        }
+    }
+
+    private KioskPreloader() {
+    }
+
+    /**
+     * @return the id of the kiosk to show in the tab
+     */
+    @NonNull
+    public static String resolveKioskId(final int serviceId, @NonNull final HomeTab tab)
+            throws ExtractionException {
+        final KioskList kioskList = NewPipe.getService(serviceId).getKioskList();
+        final Set<String> available = kioskList.getAvailableKiosks();
+        for (final String kioskId : tab.preferredKioskIds) {
+            if (available.contains(kioskId)) {
+                return kioskId;
+            }
+        }
+        return kioskList.getDefaultKioskId();
+    }
+
+    @NonNull
+    public static String urlOf(final int serviceId, @NonNull final String kioskId)
+            throws ExtractionException {
+        return NewPipe.getService(serviceId).getKioskList()
+                .getListLinkHandlerFactoryByType(kioskId)
+                .fromId(kioskId)
+                .getUrl();
+    }
+
+    /**
+     * @return the maximum number of kiosks to load at once: fewer on slow networks, where
+     *         parallel loads would only slow down the page on screen
+     */
+    private static int concurrencyCap() {
+        switch (BandwidthEstimator.getInstance().getQualityTier()) {
+            case LOW:
+                return 1;
+            case MEDIUM:
+                return 2;
+            case HIGH:
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Loads the first page of the kiosks of all tabs, each kiosk once, with
+     * {@link LoadScheduler.Priority#PREFETCH} priority, so besides {@link #concurrencyCap()} the
+     * slots of that class bound how many load at once. Kiosks which fail to load are skipped,
+     * their tab will show the error when it is opened.
+     *
+     * @return completes once all kiosks were loaded or failed to; never fails
+     */
+    @NonNull
+    public static Completable preload(final int serviceId,
+                                      @NonNull final Collection<HomeTab> tabs) {
+        return Observable.fromCallable(() -> {
+                    final Set<String> urls = new LinkedHashSet<>();
+                    for (final HomeTab tab : tabs) {
+                        urls.add(urlOf(serviceId, resolveKioskId(serviceId, tab)));
+                    }
+                    return List.copyOf(urls);
+                })
+                .flatMapIterable(urls -> urls)
+                .flatMapCompletable(url -> InfoLoader.getKioskInfo(serviceId, url, false)
+                                .subscribeOn(LoadScheduler.getInstance()
+                                        .scheduler(null, LoadScheduler.Priority.PREFETCH))
+                                .ignoreElements()
+                                .doOnComplete(() -> MetricsRegistry.getInstance()
+                                        .counter("kiosk.preload.done").incrementAndGet())
+                                .onErrorComplete(),
+                        false, concurrencyCap())
+                .onErrorComplete();
+    }
+}
@@ -0,0 +1,174 @@
+package com.nidoham.skymate.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+/**
+ * Runs content loading work in priority classes, each with its own bounded number of slots.
+ * <br>
+ * Work is submitted on behalf of an owner, usually the fragment showing the result. While the
+ * owner is not visible its work is demoted to a lower class, so the page the user looks at never
+ * waits behind work for pages they do not look at. Owners report their visibility through
+ * {@link #setVisible(Object, boolean)} from {@code onResume()}/{@code onPause()}: the pagers in
+ * {@code MainActivity} and {@code HomeFragment} only resume the selected page, so switching tabs
+ * re-prioritises all queued work. Work that is already running keeps its slot, unless it is
+ * disposed, which interrupts it like work on {@code Schedulers.io()}, so that e.g. a timed out
+ * load does not hold its slot until its blocking call returns.
+ */
+public final class LoadScheduler {
+
+    public enum Priority {
+        /** Content of the page on screen, e.g. its first page of items. */
+        VISIBLE(4),
+        /**
+         * Many independent loads which together make up the page on screen, e.g. the channels of
+         * the subscription feed, so that they run in parallel without taking all slots of
+         * {@link #VISIBLE}.
+         */
+        FAN_OUT(6),
+        /** Content the user is likely to need soon, e.g. the next page of a list. */
+        PREFETCH(2),
+        /** Anything else, e.g. refreshing cached content. */
+        BACKGROUND(1);
+
+        private final int slots;
+
+        Priority(final int slots) {
+            this.slots = slots;
+        }
+
+        Priority demoted() {
+            return this == VISIBLE ? PREFETCH : BACKGROUND;
+        }
+    }
+
+    private static final LoadScheduler INSTANCE = new LoadScheduler();
+
+    private final Object lock = new Object();
+    /** Queued work in submission order, scanned for the oldest task of each class. */
+    private final ArrayDeque<Task> pending = new ArrayDeque<>();
+    private final int[] running = new int[Priority.values().length];
+    private final Set<Object> visibleOwners = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+    // never holds more threads than there are slots in total, since it is only fed by dispatch()
+    private final ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "load-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LoadScheduler() {
+    }
+
+    public static LoadScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param owner    the object on whose behalf the work runs, or {@code null} if the work is
+     *                 not tied to any page and should always run with the given priority
+     * @param priority the priority of the work while its owner is visible
+     * @return a scheduler to pass to {@code subscribeOn()}
+     */
+    @NonNull
+    public Scheduler scheduler(@Nullable final Object owner, @NonNull final Priority priority) {
+        return Schedulers.from(command -> submit(owner, priority, command), true);
+    }
+
+    public void setVisible(@NonNull final Object owner, final boolean visible) {
+        synchronized (lock) {
+            if (visible) {
+                visibleOwners.add(owner);
+            } else {
+                visibleOwners.remove(owner);
+            }
+        }
+        dispatch();
+    }
+
+    private void submit(@Nullable final Object owner, @NonNull final Priority priority,
+                        @NonNull final Runnable command) {
+        synchronized (lock) {
+            pending.add(new Task(owner, priority, command));
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        synchronized (lock) {
+            for (final Priority priority : Priority.values()) {
+                final Iterator<Task> iterator = pending.iterator();
+                while (running[priority.ordinal()] < priority.slots && iterator.hasNext()) {
+                    final Task task = iterator.next();
+                    if (effectivePriorityOf(task) == priority) {
+                        iterator.remove();
+                        running[priority.ordinal()]++;
+                        task.runningAs = priority;
+                        threads.execute(task);
+                    }
+                }
+            }
+        }
+    }
+
+    private Priority effectivePriorityOf(final Task task) {
+        if (task.owner == null) {
+            return task.priority;
+        }
+        final Object owner = task.owner.get();
+        return owner != null && visibleOwners.contains(owner)
+                ? task.priority : task.priority.demoted();
+    }
+
+    private void onFinished(final Priority priority) {
+        synchronized (lock) {
+            running[priority.ordinal()]--;
+        }
+        dispatch();
+    }
+
+    private final class Task implements Runnable {
+        @Nullable
+        final WeakReference<Object> owner;
+        final Priority priority;
+        final Runnable command;
+        final long queuedAtNanos = System.nanoTime();
+        Priority runningAs;
+
+        Task(@Nullable final Object owner, final Priority priority, final Runnable command) {
+            this.owner = owner == null ? null : new WeakReference<>(owner);
+            this.priority = priority;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            MetricsRegistry.getInstance()
+                    .histogram("sched." + runningAs.name().toLowerCase(Locale.ROOT) + ".wait")
+                    .record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAtNanos));
+            try {
+                command.run();
+            } finally {
+                onFinished(runningAs);
+            }
+        }
+    }
+}
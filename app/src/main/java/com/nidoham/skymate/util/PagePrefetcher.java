@@ -0,0 +1,232 @@
+package com.nidoham.skymate.util;
+
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.Page;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+/**
+ * Loads the next pages of a paginated list ahead of time, so that appending a page when the user
+ * reaches the end of the list usually takes it from memory instead of waiting for the network.
+ * <br>
+ * Since a {@link Page} is only known once the previous one was loaded, pages are fetched one
+ * after the other, with {@link LoadScheduler.Priority#PREFETCH} priority. At least one page is
+ * kept ready; more are read ahead while the user scrolls fast relative to how long a page takes
+ * to load, up to {@link #MAX_BUFFERED_PAGES}.
+ * <br>
+ * All methods must be called on the main thread, where results are delivered too.
+ */
+@MainThread
+public final class PagePrefetcher<T extends InfoItem> {
+
+    private static final int MAX_BUFFERED_PAGES = 3;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final long DEFAULT_LATENCY_MILLIS = 1000;
+    // scrolling speed is considered zero once the list stood still for this long
+    private static final long IDLE_AFTER_MILLIS = 1000;
+    // weight of a new sample in the moving averages
+    private static final double SMOOTHING = 0.3;
+
+    @Nullable
+    private final Object owner;
+    @NonNull
+    private final Function<Page, Single<InfoItemsPage<T>>> loader;
+    @NonNull
+    private final String metricsName;
+
+    private final ArrayDeque<InfoItemsPage<T>> buffer = new ArrayDeque<>();
+    @Nullable
+    private Page nextToFetch;
+    @Nullable
+    private Disposable inFlight;
+    // set after a failed fetch, so that it is only retried once a page is asked for again
+    private boolean failed;
+
+    @Nullable
+    private Consumer<InfoItemsPage<T>> waitingOnPage;
+    @Nullable
+    private Consumer<Throwable> waitingOnError;
+
+    private double itemsPerSecond;
+    private int lastPosition = -1;
+    private long lastScrollMillis;
+    private double latencyMillis = DEFAULT_LATENCY_MILLIS;
+    private double pageSize = DEFAULT_PAGE_SIZE;
+
+    /**
+     * @param owner       passed to {@link LoadScheduler#scheduler(Object, LoadScheduler.Priority)}
+     * @param loader      loads the items of a page, e.g. a method reference to
+     *                    {@code InfoLoader.getMoreKioskItems} with the URL bound
+     * @param metricsName distinguishes the {@code prefetch.<name>.*} series of this list
+     */
+    public PagePrefetcher(@Nullable final Object owner,
+                          @NonNull final Function<Page, Single<InfoItemsPage<T>>> loader,
+                          @NonNull final String metricsName) {
+        this.owner = owner;
+        this.loader = loader;
+        this.metricsName = metricsName;
+    }
+
+    /**
+     * Drops all buffered pages and starts reading ahead from the given page, e.g. after the
+     * first page of the list was (re)loaded.
+     *
+     * @param nextPage the page following the ones shown, or {@code null} if there is none
+     */
+    public void reset(@Nullable final Page nextPage) {
+        cancel();
+        buffer.clear();
+        failed = false;
+        nextToFetch = nextPage;
+        fill();
+    }
+
+    /**
+     * @return whether {@link #requestNext} can still return a page
+     */
+    public boolean hasMore() {
+        return !buffer.isEmpty() || nextToFetch != null;
+    }
+
+    /**
+     * @return whether a page was requested and is still being waited for
+     */
+    public boolean isWaiting() {
+        return waitingOnPage != null;
+    }
+
+    /**
+     * Delivers the next page, right away if it is buffered or once it is loaded otherwise.
+     * Ignored while a previous request is still waiting.
+     */
+    public void requestNext(@NonNull final Consumer<InfoItemsPage<T>> onPage,
+                            @NonNull final Consumer<Throwable> onError) {
+        if (isWaiting() || !hasMore()) {
+            return;
+        }
+
+        final InfoItemsPage<T> page = buffer.poll();
+        if (page != null) {
+            counter("hit").incrementAndGet();
+            onPage.accept(page);
+        } else {
+            counter("stall").incrementAndGet();
+            waitingOnPage = onPage;
+            waitingOnError = onError;
+            failed = false;
+        }
+        fill();
+    }
+
+    /**
+     * Feeds the scrolling speed, which decides how many pages are read ahead.
+     *
+     * @param lastVisiblePosition the adapter position of the last visible item
+     */
+    public void onScrolled(final int lastVisiblePosition) {
+        final long now = SystemClock.uptimeMillis();
+        if (lastPosition >= 0 && now > lastScrollMillis) {
+            final double sample = Math.max(0, lastVisiblePosition - lastPosition)
+                    * 1000.0 / (now - lastScrollMillis);
+            itemsPerSecond = now - lastScrollMillis > IDLE_AFTER_MILLIS
+                    ? sample : itemsPerSecond + SMOOTHING * (sample - itemsPerSecond);
+        }
+        lastPosition = lastVisiblePosition;
+        lastScrollMillis = now;
+        fill();
+    }
+
+    /**
+     * Stops reading ahead and forgets buffered pages and waiting requests, e.g. when the view
+     * showing the list is destroyed.
+     */
+    public void dispose() {
+        cancel();
+        buffer.clear();
+        nextToFetch = null;
+    }
+
+    private void cancel() {
+        if (inFlight != null) {
+            inFlight.dispose();
+            inFlight = null;
+        }
+        waitingOnPage = null;
+        waitingOnError = null;
+    }
+
+    /**
+     * @return how many pages to keep ready: enough to cover the items scrolled past while one
+     *         page loads, plus one
+     */
+    private int targetDepth() {
+        final double velocity =
+                SystemClock.uptimeMillis() - lastScrollMillis > IDLE_AFTER_MILLIS
+                        ? 0 : itemsPerSecond;
+        final double pagesPerLoad = velocity * latencyMillis / 1000.0 / Math.max(1, pageSize);
+        return (int) Math.min(MAX_BUFFERED_PAGES, 1 + Math.ceil(pagesPerLoad));
+    }
+
+    private void fill() {
+        if (inFlight != null || failed || nextToFetch == null
+                || (!isWaiting() && buffer.size() >= targetDepth())) {
+            return;
+        }
+
+        final Page page = nextToFetch;
+        final long startMillis = SystemClock.uptimeMillis();
+        inFlight = loader.apply(page)
+                .subscribeOn(LoadScheduler.getInstance()
+                        .scheduler(owner, LoadScheduler.Priority.PREFETCH))
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(itemsPage -> {
+                    inFlight = null;
+                    final long elapsed = SystemClock.uptimeMillis() - startMillis;
+                    MetricsRegistry.getInstance().histogram("prefetch." + metricsName + ".load")
+                            .record(elapsed);
+                    latencyMillis += SMOOTHING * (elapsed - latencyMillis);
+                    pageSize += SMOOTHING * (itemsPage.getItems().size() - pageSize);
+                    nextToFetch = itemsPage.hasNextPage() ? itemsPage.getNextPage() : null;
+
+                    final Consumer<InfoItemsPage<T>> onPage = waitingOnPage;
+                    if (onPage != null) {
+                        waitingOnPage = null;
+                        waitingOnError = null;
+                        onPage.accept(itemsPage);
+                    } else {
+                        buffer.add(itemsPage);
+                    }
+                    fill();
+                }, throwable -> {
+                    inFlight = null;
+                    failed = true;
+                    final Consumer<Throwable> onError = waitingOnError;
+                    waitingOnPage = null;
+                    waitingOnError = null;
+                    if (onError != null) {
+                        onError.accept(throwable);
+                    }
+                });
+    }
+
+    @NonNull
+    private AtomicLong counter(@NonNull final String event) {
+        return MetricsRegistry.getInstance().counter("prefetch." + metricsName + "." + event);
+    }
+}
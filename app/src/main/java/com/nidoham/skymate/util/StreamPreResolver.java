@@ -0,0 +1,238 @@
+package com.nidoham.skymate.util;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+import com.nidoham.skymate.network.BandwidthEstimator;
+
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.util.InfoLoader;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+/**
+ * Loads the {@link org.schabi.newpipe.extractor.stream.StreamInfo} of the first visible items of
+ * a list in the background, so that opening one of them finds it in {@link
+ * org.schabi.newpipe.util.WeightedInfoCache}, where {@link InfoLoader#getStreamInfo} puts it.
+ * <br>
+ * Items are only resolved once scrolling stopped, at most {@link #MAX_IN_FLIGHT} at a time with
+ * {@link LoadScheduler.Priority#BACKGROUND} priority, and resolutions of items scrolled out of
+ * view are cancelled. On metered networks, on slow ones and with Data Saver enabled, fewer items
+ * or none at all are resolved, since each resolution downloads a whole watch page.
+ * <br>
+ * Disabled by default: items are currently opened in other apps, so nothing reads the resolved
+ * infos yet. The screen showing stream details in the app should {@link #setEnabled enable} it.
+ */
+@MainThread
+public final class StreamPreResolver {
+
+    private static final int ITEMS_UNMETERED = 3;
+    private static final int ITEMS_METERED = 1;
+    private static final int MAX_IN_FLIGHT = 2;
+    // recently resolved items are most likely still cached, so they are not resolved again
+    private static final int MAX_REMEMBERED = 64;
+
+    @NonNull
+    private final ConnectivityManager connectivityManager;
+    @Nullable
+    private final Object owner;
+
+    private static volatile boolean enabled = false;
+
+    private final Map<String, Disposable> inFlight = new HashMap<>();
+    private final Set<String> resolved = new LinkedHashSet<>();
+
+    @Nullable
+    private RecyclerView recyclerView;
+    @Nullable
+    private List<StreamInfoItem> items;
+
+    private final RecyclerView.OnScrollListener scrollListener =
+            new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(@NonNull final RecyclerView view,
+                                                 final int newState) {
+                    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                        update();
+                    }
+                }
+            };
+
+    private final RecyclerView.AdapterDataObserver dataObserver =
+            new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onChanged() {
+                    postUpdate();
+                }
+
+                @Override
+                public void onItemRangeChanged(final int positionStart, final int itemCount) {
+                    // e.g. items read from the feed store, which were null placeholders before
+                    postUpdate();
+                }
+
+                @Override
+                public void onItemRangeInserted(final int positionStart, final int itemCount) {
+                    postUpdate();
+                }
+            };
+
+    /**
+     * @param owner passed to {@link LoadScheduler#scheduler(Object, LoadScheduler.Priority)}
+     */
+    public StreamPreResolver(@NonNull final Context context, @Nullable final Object owner) {
+        this.connectivityManager = context.getSystemService(ConnectivityManager.class);
+        this.owner = owner;
+    }
+
+    /**
+     * @param isEnabled whether lists attached from now on are watched
+     */
+    public static void setEnabled(final boolean isEnabled) {
+        enabled = isEnabled;
+    }
+
+    /**
+     * Starts watching the list, whose adapter must already be set and show the given items.
+     * Does nothing while {@link #setEnabled disabled}.
+     */
+    public void attach(@NonNull final RecyclerView view,
+                       @NonNull final List<StreamInfoItem> listItems) {
+        detach();
+        if (!enabled) {
+            return;
+        }
+        recyclerView = view;
+        items = listItems;
+        view.addOnScrollListener(scrollListener);
+        if (view.getAdapter() != null) {
+            view.getAdapter().registerAdapterDataObserver(dataObserver);
+        }
+    }
+
+    /**
+     * Stops watching the list and cancels all running resolutions.
+     */
+    public void detach() {
+        if (recyclerView != null) {
+            recyclerView.removeOnScrollListener(scrollListener);
+            if (recyclerView.getAdapter() != null) {
+                recyclerView.getAdapter().unregisterAdapterDataObserver(dataObserver);
+            }
+            recyclerView = null;
+        }
+        items = null;
+        for (final Disposable disposable : inFlight.values()) {
+            disposable.dispose();
+        }
+        inFlight.clear();
+    }
+
+    private void postUpdate() {
+        if (recyclerView != null) {
+            // wait for the new items to be laid out
+            recyclerView.post(this::update);
+        }
+    }
+
+    private int itemBudget() {
+        if (connectivityManager.getRestrictBackgroundStatus()
+                == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED) {
+            return 0;
+        } else if (connectivityManager.isActiveNetworkMetered()
+                || BandwidthEstimator.getInstance().getQualityTier()
+                        == BandwidthEstimator.QualityTier.LOW) {
+            return ITEMS_METERED;
+        }
+        return ITEMS_UNMETERED;
+    }
+
+    private void update() {
+        if (recyclerView == null || items == null
+                || recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE
+                || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) recyclerView.getLayoutManager();
+        final int first = layoutManager.findFirstVisibleItemPosition();
+        final int last = layoutManager.findLastVisibleItemPosition();
+        final Set<String> wanted = new HashSet<>();
+        if (first != RecyclerView.NO_POSITION) {
+            final int end = Math.min(Math.min(last + 1, items.size()), first + itemBudget());
+            for (int i = first; i < end; i++) {
+                final StreamInfoItem item = items.get(i);
+                if (item != null) { // null until read from the feed store
+                    wanted.add(item.getUrl());
+                }
+            }
+        }
+
+        final Iterator<Map.Entry<String, Disposable>> iterator = inFlight.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Disposable> entry = iterator.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().dispose();
+                iterator.remove();
+                MetricsRegistry.getInstance().counter("preresolve.cancelled").incrementAndGet();
+            }
+        }
+
+        for (int i = first; i >= 0 && i < items.size() && inFlight.size() < MAX_IN_FLIGHT; i++) {
+            final StreamInfoItem item = items.get(i);
+            final String url = item == null ? null : item.getUrl();
+            if (url == null || !wanted.contains(url)) {
+                break;
+            } else if (!resolved.contains(url) && !inFlight.containsKey(url)) {
+                resolve(item);
+            }
+        }
+    }
+
+    private void resolve(@NonNull final StreamInfoItem item) {
+        final String url = item.getUrl();
+        MetricsRegistry.getInstance().counter("preresolve.started").incrementAndGet();
+        inFlight.put(url, InfoLoader.getStreamInfo(item.getServiceId(), url, false)
+                .subscribeOn(LoadScheduler.getInstance()
+                        .scheduler(owner, LoadScheduler.Priority.BACKGROUND))
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(streamInfo -> {
+                    inFlight.remove(url);
+                    remember(url);
+                    MetricsRegistry.getInstance().counter("preresolve.resolved")
+                            .incrementAndGet();
+                    update();
+                }, throwable -> {
+                    inFlight.remove(url);
+                    // not retried, e.g. the stream might be age restricted or unavailable
+                    remember(url);
+                    update();
+                }));
+    }
+
+    private void remember(@NonNull final String url) {
+        resolved.add(url);
+        final Iterator<String> iterator = resolved.iterator();
+        while (resolved.size() > MAX_REMEMBERED) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.schabi.newpipe.util;
+
+import androidx.annotation.NonNull;
+
+import com.nidoham.skymate.metrics.Histogram;
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Names and records the info cache series in {@link MetricsRegistry}, as
+ * {@code cache.<type>.<serviceId>.<event>}. Events are the counters {@code memory_hit},
+ * {@code disk_hit}, {@code stale_serve}, {@code miss} and {@code memory_eviction}, and the
+ * histograms (in milliseconds) {@code disk_read} and {@code network_load}.
+ * <br>
+ * Disk files are named by a hash of their key, so disk evictions are only counted in total, in
+ * {@code cache.disk.eviction}; {@code cache.memory.bytes} holds the current estimated size of
+ * the memory tier.
+ */
+final class CacheMetrics {
+
+    static final String MEMORY_HIT = "memory_hit";
+    static final String DISK_HIT = "disk_hit";
+    static final String STALE_SERVE = "stale_serve";
+    static final String MISS = "miss";
+    static final String MEMORY_EVICTION = "memory_eviction";
+    static final String DISK_READ = "disk_read";
+    static final String NETWORK_LOAD = "network_load";
+
+    static final String DISK_EVICTION_COUNTER = "cache.disk.eviction";
+    static final String MEMORY_BYTES_COUNTER = "cache.memory.bytes";
+
+    private CacheMetrics() {
+    }
+
+    @NonNull
+    private static String nameOf(@NonNull final InfoCache.Type type, final int serviceId,
+                                 @NonNull final String event) {
+        return "cache." + type.name().toLowerCase(Locale.ROOT) + "." + serviceId + "." + event;
+    }
+
+    @NonNull
+    static AtomicLong counter(@NonNull final InfoCache.Type type, final int serviceId,
+                              @NonNull final String event) {
+        return MetricsRegistry.getInstance().counter(nameOf(type, serviceId, event));
+    }
+
+    @NonNull
+    static Histogram histogram(@NonNull final InfoCache.Type type, final int serviceId,
+                               @NonNull final String event) {
+        return MetricsRegistry.getInstance().histogram(nameOf(type, serviceId, event));
+    }
+}
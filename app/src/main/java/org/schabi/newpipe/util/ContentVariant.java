@@ -0,0 +1,50 @@
+package org.schabi.newpipe.util;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.extractor.NewPipe;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The settings which change what content services return for the same URL: restricted mode,
+ * content country and language.
+ * <br>
+ * {@link WeightedInfoCache} and {@link InfoDiskCache} include {@link #current()} in their keys,
+ * so switching e.g. restricted mode on and off again finds the entries of each variant still
+ * cached, instead of the caches having to be cleared on every switch. {@link InfoCache} has no
+ * such keys, so it is cleared whenever {@link #current()} notices that the variant changed,
+ * whichever of the settings it was.
+ */
+public final class ContentVariant {
+
+    private static volatile boolean restrictedMode;
+    private static final AtomicReference<String> LAST_VARIANT = new AtomicReference<>();
+
+    private ContentVariant() {
+    }
+
+    public static void setRestrictedMode(final boolean enabled) {
+        restrictedMode = enabled;
+        current(); // clear stale entries right away rather than on the next lookup
+    }
+
+    public static boolean isRestrictedMode() {
+        return restrictedMode;
+    }
+
+    /**
+     * @return a short key for the current variant, e.g. {@code u:US:en-GB}
+     */
+    @NonNull
+    public static String current() {
+        final String variant = (restrictedMode ? "r:" : "u:")
+                + NewPipe.getPreferredContentCountry().getCountryCode() + ":"
+                + NewPipe.getPreferredLocalization().getLocalizationCode();
+        final String last = LAST_VARIANT.get();
+        if (!variant.equals(last) && LAST_VARIANT.compareAndSet(last, variant) && last != null) {
+            InfoCache.getInstance().clearCache();
+        }
+        return variant;
+    }
+}
@@ -0,0 +1,217 @@
+package org.schabi.newpipe.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import org.schabi.newpipe.extractor.Info;
+import org.schabi.newpipe.service.ServiceHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+/**
+ * Second, persistent tier below {@link InfoCache}: keeps serialized {@link Info} objects of the
+ * list-like {@link InfoCache.Type}s in the app's cache directory, so that they can be shown right
+ * away after a cold start.
+ * <br>
+ * Entries expire like in {@link InfoCache}, after {@link ServiceHelper#getCacheExpirationMillis},
+ * but are kept for up to {@link #MAX_STALE_AGE_MILLIS} afterwards, so that an expired entry can
+ * still be shown while a fresh one is being loaded. The total size of the cache is bounded by
+ * {@link #MAX_SIZE_BYTES}, deleting the least recently written entries first.
+ * <br>
+ * All methods do disk I/O and must not be called on the main thread.
+ */
+public final class InfoDiskCache {
+    private static final String TAG = InfoDiskCache.class.getSimpleName();
+
+    private static final String DIRECTORY_NAME = "info_cache";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MAX_SIZE_BYTES = 20L * 1024L * 1024L;
+    private static final long MAX_STALE_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static InfoDiskCache instance;
+
+    private final File directory;
+    private long sizeBytes = -1; // computed lazily, on the first write
+
+    public static final class Entry<I extends Info> {
+        @NonNull
+        public final I info;
+        public final long expireTimestamp;
+
+        Entry(@NonNull final I info, final long expireTimestamp) {
+            this.info = info;
+            this.expireTimestamp = expireTimestamp;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expireTimestamp;
+        }
+    }
+
+    private InfoDiskCache(@NonNull final File directory) {
+        this.directory = directory;
+    }
+
+    public static synchronized void init(@NonNull final Context context) {
+        if (instance == null) {
+            instance = new InfoDiskCache(new File(context.getCacheDir(), DIRECTORY_NAME));
+        }
+    }
+
+    /**
+     * @return the cache, or {@code null} if {@link #init(Context)} was not called yet
+     */
+    @Nullable
+    public static synchronized InfoDiskCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return whether infos of the given type are kept on disk: only lists are, since e.g. stream
+     *         infos contain URLs which expire after a few hours
+     */
+    public static boolean isPersistable(@NonNull final InfoCache.Type type) {
+        return type == InfoCache.Type.KIOSK
+                || type == InfoCache.Type.CHANNEL
+                || type == InfoCache.Type.PLAYLIST;
+    }
+
+    @NonNull
+    private File fileOf(final int serviceId, @NonNull final String url,
+                        @NonNull final InfoCache.Type type) {
+        final String key =
+                ContentVariant.current() + ":" + serviceId + ":" + type.ordinal() + ":" + url;
+        return new File(directory, ByteString.encodeUtf8(key).sha256().hex());
+    }
+
+    /**
+     * @return the cached entry, possibly expired, or {@code null} if there is none
+     */
+    @Nullable
+    public <I extends Info> Entry<I> get(final int serviceId, @NonNull final String url,
+                                         @NonNull final InfoCache.Type type) {
+        final File file = fileOf(serviceId, url, type);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            final long expireTimestamp = in.readLong();
+            if (System.currentTimeMillis() > expireTimestamp + MAX_STALE_AGE_MILLIS) {
+                remove(serviceId, url, type);
+                return null;
+            }
+            @SuppressWarnings("unchecked") final I info = (I) in.readObject();
+            return new Entry<>(info, expireTimestamp);
+        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+            // e.g. written by an older version of the extractor with incompatible classes
+            Log.w(TAG, "Dropping unreadable cache entry for " + url, e);
+            remove(serviceId, url, type);
+            return null;
+        }
+    }
+
+    public void put(final int serviceId, @NonNull final String url, @NonNull final Info info,
+                    @NonNull final InfoCache.Type type) {
+        if (!isPersistable(type) || (!directory.exists() && !directory.mkdirs())) {
+            return;
+        }
+
+        final File file = fileOf(serviceId, url, type);
+        final File temp = new File(file.getPath() + TEMP_SUFFIX);
+        final long expireTimestamp = System.currentTimeMillis()
+                + ServiceHelper.getCacheExpirationMillis(serviceId);
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeLong(expireTimestamp);
+            out.writeObject(info);
+        } catch (final IOException e) {
+            Log.w(TAG, "Could not cache " + url, e);
+            temp.delete();
+            return;
+        }
+
+        synchronized (this) {
+            final long oldLength = file.length(); // 0 if it does not exist
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+            if (sizeBytes < 0) {
+                sizeBytes = computeSize();
+            } else {
+                sizeBytes += file.length() - oldLength;
+            }
+            if (sizeBytes > MAX_SIZE_BYTES) {
+                trimTo(MAX_SIZE_BYTES * 3 / 4);
+            }
+        }
+    }
+
+    public synchronized void remove(final int serviceId, @NonNull final String url,
+                                    @NonNull final InfoCache.Type type) {
+        final File file = fileOf(serviceId, url, type);
+        final long length = file.length();
+        if (file.delete() && sizeBytes >= 0) {
+            sizeBytes -= length;
+        }
+    }
+
+    public synchronized void clear() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        sizeBytes = 0;
+    }
+
+    private long computeSize() {
+        long size = 0;
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private void trimTo(final long targetBytes) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (final File file : files) {
+            if (sizeBytes <= targetBytes) {
+                break;
+            }
+            final long length = file.length();
+            if (!file.getName().endsWith(TEMP_SUFFIX) && file.delete()) {
+                sizeBytes -= length;
+                MetricsRegistry.getInstance().counter(CacheMetrics.DISK_EVICTION_COUNTER)
+                        .incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.schabi.newpipe.util;
+
+import androidx.annotation.NonNull;
+
+import com.nidoham.skymate.util.LoadScheduler;
+
+import org.schabi.newpipe.extractor.Info;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.Page;
+import org.schabi.newpipe.extractor.channel.ChannelInfo;
+import org.schabi.newpipe.extractor.channel.tabs.ChannelTabInfo;
+import org.schabi.newpipe.extractor.kiosk.KioskInfo;
+import org.schabi.newpipe.extractor.linkhandler.ListLinkHandler;
+import org.schabi.newpipe.extractor.playlist.PlaylistInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+
+/**
+ * Loads infos through two cache tiers: the in-memory {@link WeightedInfoCache}, then the
+ * persistent {@link InfoDiskCache} for the types it keeps. Infos are extracted directly rather
+ * than through {@link ExtractorHelper}, whose count-bounded {@link InfoCache} would otherwise
+ * hold a second copy of each of them. Further pages of a list are not cached at all.
+ * <br>
+ * The returned {@link Observable}s implement stale-while-revalidate: if only an expired entry is
+ * cached, it is emitted right away, and a fresh info is loaded with
+ * {@link LoadScheduler.Priority#BACKGROUND} priority and emitted as a second item once available.
+ * If refreshing fails after a stale entry was emitted, the observable just completes, since
+ * there is already something to show. Without any cached entry, the info is loaded from the
+ * network. Callers which treat a stale entry differently, e.g. do not follow its next page, use
+ * the {@code load...} variants, which tell whether an info is one.
+ */
+public final class InfoLoader {
+
+    /**
+     * An info together with whether it is an expired cache entry, which the info loaded from the
+     * network may follow.
+     */
+    public static final class Loaded<I extends Info> {
+        @NonNull
+        public final I info;
+        public final boolean stale;
+
+        Loaded(@NonNull final I info, final boolean stale) {
+            this.info = info;
+            this.stale = stale;
+        }
+    }
+
+    private InfoLoader() {
+    }
+
+    public static Observable<KioskInfo> getKioskInfo(final int serviceId,
+                                                     @NonNull final String url,
+                                                     final boolean forceLoad) {
+        return loadKioskInfo(serviceId, url, forceLoad).map(loaded -> loaded.info);
+    }
+
+    public static Observable<Loaded<KioskInfo>> loadKioskInfo(final int serviceId,
+                                                              @NonNull final String url,
+                                                              final boolean forceLoad) {
+        return load(serviceId, url, InfoCache.Type.KIOSK, forceLoad, Single.fromCallable(() ->
+                KioskInfo.getInfo(NewPipe.getService(serviceId), url)));
+    }
+
+    public static Single<InfoItemsPage<StreamInfoItem>> getMoreKioskItems(
+            final int serviceId, @NonNull final String url, @NonNull final Page nextPage) {
+        return Single.fromCallable(() ->
+                KioskInfo.getMoreItems(NewPipe.getService(serviceId), url, nextPage));
+    }
+
+    /**
+     * Stream infos are only cached in memory, see {@link InfoDiskCache#isPersistable}.
+     */
+    public static Single<StreamInfo> getStreamInfo(final int serviceId, @NonNull final String url,
+                                                   final boolean forceLoad) {
+        return load(serviceId, url, InfoCache.Type.STREAM, forceLoad, Single.fromCallable(() ->
+                StreamInfo.getInfo(NewPipe.getService(serviceId), url)))
+                .map(loaded -> loaded.info).firstOrError();
+    }
+
+    public static Observable<ChannelInfo> getChannelInfo(final int serviceId,
+                                                         @NonNull final String url,
+                                                         final boolean forceLoad) {
+        return load(serviceId, url, InfoCache.Type.CHANNEL, forceLoad, Single.fromCallable(() ->
+                ChannelInfo.getInfo(NewPipe.getService(serviceId), url)))
+                .map(loaded -> loaded.info);
+    }
+
+    public static Observable<ChannelTabInfo> getChannelTab(final int serviceId,
+                                                           @NonNull final ListLinkHandler tab,
+                                                           final boolean forceLoad) {
+        return load(serviceId, tab.getUrl(), InfoCache.Type.CHANNEL_TAB, forceLoad,
+                Single.fromCallable(() ->
+                        ChannelTabInfo.getInfo(NewPipe.getService(serviceId), tab)))
+                .map(loaded -> loaded.info);
+    }
+
+    public static Observable<PlaylistInfo> getPlaylistInfo(final int serviceId,
+                                                           @NonNull final String url,
+                                                           final boolean forceLoad) {
+        return load(serviceId, url, InfoCache.Type.PLAYLIST, forceLoad, Single.fromCallable(() ->
+                PlaylistInfo.getInfo(NewPipe.getService(serviceId), url)))
+                .map(loaded -> loaded.info);
+    }
+
+    /**
+     * @param network loads the info from the network
+     */
+    private static <I extends Info> Observable<Loaded<I>> load(final int serviceId,
+                                                               @NonNull final String url,
+                                                               @NonNull final InfoCache.Type type,
+                                                               final boolean forceLoad,
+                                                               @NonNull final Single<I> network) {
+        final Single<Loaded<I>> networkAndDisk = Single.defer(() -> {
+            final long startNanos = System.nanoTime();
+            return network.doOnSuccess(info -> {
+                CacheMetrics.histogram(type, serviceId, CacheMetrics.NETWORK_LOAD)
+                        .record(millisSince(startNanos));
+                WeightedInfoCache.getInstance().putInfo(serviceId, url, info, type);
+                final InfoDiskCache diskCache = InfoDiskCache.getInstance();
+                if (diskCache != null) {
+                    diskCache.put(serviceId, url, info, type);
+                }
+            }).map(info -> new Loaded<>(info, false));
+        });
+        if (forceLoad) {
+            return networkAndDisk.toObservable();
+        }
+
+        return Observable.defer(() -> {
+            @SuppressWarnings("unchecked") final I memoryInfo =
+                    (I) WeightedInfoCache.getInstance().getFromKey(serviceId, url, type);
+            if (memoryInfo != null) {
+                CacheMetrics.counter(type, serviceId, CacheMetrics.MEMORY_HIT).incrementAndGet();
+                return Observable.just(new Loaded<>(memoryInfo, false));
+            }
+
+            final InfoDiskCache diskCache = InfoDiskCache.isPersistable(type)
+                    ? InfoDiskCache.getInstance() : null;
+            final long diskStartNanos = System.nanoTime();
+            final InfoDiskCache.Entry<I> entry =
+                    diskCache == null ? null : diskCache.get(serviceId, url, type);
+            if (diskCache != null) {
+                CacheMetrics.histogram(type, serviceId, CacheMetrics.DISK_READ)
+                        .record(millisSince(diskStartNanos));
+            }
+            if (entry == null) {
+                CacheMetrics.counter(type, serviceId, CacheMetrics.MISS).incrementAndGet();
+                return networkAndDisk.toObservable();
+            } else if (!entry.isExpired()) {
+                CacheMetrics.counter(type, serviceId, CacheMetrics.DISK_HIT).incrementAndGet();
+                WeightedInfoCache.getInstance()
+                        .putInfo(serviceId, url, entry.info, type, entry.expireTimestamp);
+                return Observable.just(new Loaded<>(entry.info, false));
+            }
+
+            CacheMetrics.counter(type, serviceId, CacheMetrics.STALE_SERVE).incrementAndGet();
+            return Observable.just(new Loaded<>(entry.info, true)).concatWith(networkAndDisk
+                    .subscribeOn(LoadScheduler.getInstance()
+                            .scheduler(null, LoadScheduler.Priority.BACKGROUND))
+                    .toMaybe()
+                    .onErrorResumeWith(Maybe.empty()));
+        });
+    }
+
+    private static long millisSince(final long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,274 @@
+package org.schabi.newpipe.util;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import org.schabi.newpipe.extractor.Image;
+import org.schabi.newpipe.extractor.Info;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.ListInfo;
+import org.schabi.newpipe.extractor.channel.ChannelInfo;
+import org.schabi.newpipe.extractor.stream.Stream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.service.ServiceHelper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory {@link Info} cache bounded by the estimated memory its entries retain, rather than
+ * by their number like {@link InfoCache}: one channel with hundreds of items weighs as much as
+ * hundreds of small entries.
+ * <br>
+ * The budget is a share of the app's heap limit from {@link ActivityManager#getMemoryClass()},
+ * and {@link #onTrimMemory(int)} sheds entries step by step as the system runs low on memory.
+ * <br>
+ * It covers the infos loaded through {@link InfoLoader}, but not everything the app keeps in
+ * memory: search results have their own count-bounded cache in the search package, and the
+ * extractor helpers of the library still fill {@link InfoCache}, e.g. for comments.
+ */
+public final class WeightedInfoCache {
+
+    private static final int HEAP_SHARE_DIVISOR = 16;
+    private static final int MIN_BUDGET_BYTES = 2 * 1024 * 1024;
+    private static final int MAX_BUDGET_BYTES = 24 * 1024 * 1024;
+    private static final int DEFAULT_BUDGET_BYTES = 4 * 1024 * 1024;
+
+    // rough retained sizes of the objects making up an info, including their headers and fields
+    private static final int INFO_OVERHEAD_BYTES = 2048;
+    private static final int ITEM_OVERHEAD_BYTES = 512;
+    private static final int IMAGE_OVERHEAD_BYTES = 96;
+    private static final int STREAM_OVERHEAD_BYTES = 256;
+
+    private static final WeightedInfoCache INSTANCE = new WeightedInfoCache();
+
+    private static final class CacheData {
+        final Info info;
+        final InfoCache.Type type;
+        final long expireTimestamp;
+        final int weight;
+
+        CacheData(final Info info, final InfoCache.Type type, final long expireTimestamp,
+                  final int weight) {
+            this.info = info;
+            this.type = type;
+            this.expireTimestamp = expireTimestamp;
+            this.weight = weight;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expireTimestamp;
+        }
+    }
+
+    private final LruCache<String, CacheData> lruCache =
+            new LruCache<String, CacheData>(DEFAULT_BUDGET_BYTES) {
+                @Override
+                protected int sizeOf(@NonNull final String key, @NonNull final CacheData value) {
+                    return value.weight;
+                }
+
+                @Override
+                protected void entryRemoved(final boolean evicted, @NonNull final String key,
+                                            @NonNull final CacheData oldValue,
+                                            @Nullable final CacheData newValue) {
+                    if (evicted) {
+                        CacheMetrics.counter(oldValue.type, oldValue.info.getServiceId(),
+                                CacheMetrics.MEMORY_EVICTION).incrementAndGet();
+                    }
+                }
+            };
+
+    private WeightedInfoCache() {
+    }
+
+    public static WeightedInfoCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sizes the cache according to the device's per-app heap limit.
+     */
+    public void init(@NonNull final Context context) {
+        final ActivityManager activityManager = context.getSystemService(ActivityManager.class);
+        final long heapBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        lruCache.resize((int) Math.max(MIN_BUDGET_BYTES,
+                Math.min(MAX_BUDGET_BYTES, heapBytes / HEAP_SHARE_DIVISOR)));
+    }
+
+    @NonNull
+    private static String keyOf(final int serviceId, @NonNull final String url,
+                                @NonNull final InfoCache.Type type) {
+        return ContentVariant.current() + ":" + serviceId + ":" + type.ordinal() + ":" + url;
+    }
+
+    /**
+     * @return the cached info, or {@code null} if there is none or it expired
+     */
+    @Nullable
+    public Info getFromKey(final int serviceId, @NonNull final String url,
+                           @NonNull final InfoCache.Type type) {
+        final String key = keyOf(serviceId, url, type);
+        final CacheData data = lruCache.get(key);
+        if (data == null) {
+            return null;
+        } else if (data.isExpired()) {
+            lruCache.remove(key);
+            return null;
+        }
+        return data.info;
+    }
+
+    public void putInfo(final int serviceId, @NonNull final String url, @NonNull final Info info,
+                        @NonNull final InfoCache.Type type) {
+        putInfo(serviceId, url, info, type,
+                System.currentTimeMillis() + ServiceHelper.getCacheExpirationMillis(serviceId));
+    }
+
+    public void putInfo(final int serviceId, @NonNull final String url, @NonNull final Info info,
+                        @NonNull final InfoCache.Type type, final long expireTimestamp) {
+        lruCache.put(keyOf(serviceId, url, type),
+                new CacheData(info, type, expireTimestamp, estimateRetainedBytes(info)));
+        updateSizeMetric();
+    }
+
+    public void removeInfo(final int serviceId, @NonNull final String url,
+                           @NonNull final InfoCache.Type type) {
+        lruCache.remove(keyOf(serviceId, url, type));
+        updateSizeMetric();
+    }
+
+    public void clearCache() {
+        lruCache.evictAll();
+        updateSizeMetric();
+    }
+
+    /**
+     * @return the estimated bytes retained by all entries
+     */
+    public int getSize() {
+        return lruCache.size();
+    }
+
+    public int getMaxSize() {
+        return lruCache.maxSize();
+    }
+
+    /**
+     * Frees memory according to a level passed to {@link ComponentCallbacks2#onTrimMemory(int)}:
+     * the more pressing the level, the more entries are dropped, least recently used first.
+     */
+    public void onTrimMemory(final int level) {
+        removeExpired();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            lruCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            lruCache.trimToSize(lruCache.maxSize() / 4);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            lruCache.trimToSize(lruCache.maxSize() / 2);
+        } else {
+            // TRIM_MEMORY_RUNNING_MODERATE and TRIM_MEMORY_UI_HIDDEN
+            lruCache.trimToSize(lruCache.maxSize() * 3 / 4);
+        }
+        updateSizeMetric();
+    }
+
+    private void updateSizeMetric() {
+        MetricsRegistry.getInstance().counter(CacheMetrics.MEMORY_BYTES_COUNTER)
+                .set(lruCache.size());
+    }
+
+    private void removeExpired() {
+        for (final Map.Entry<String, CacheData> entry : lruCache.snapshot().entrySet()) {
+            if (entry.getValue().isExpired()) {
+                lruCache.remove(entry.getKey());
+            }
+        }
+    }
+
+    static int estimateRetainedBytes(@NonNull final Info info) {
+        long bytes = INFO_OVERHEAD_BYTES
+                + stringBytes(info.getName()) + stringBytes(info.getUrl())
+                + stringBytes(info.getOriginalUrl()) + stringBytes(info.getId());
+        if (info instanceof ChannelInfo) {
+            final ChannelInfo channel = (ChannelInfo) info;
+            bytes += imagesBytes(channel.getAvatars()) + imagesBytes(channel.getBanners())
+                    + stringBytes(channel.getDescription());
+        }
+        if (info instanceof StreamInfo) {
+            final StreamInfo stream = (StreamInfo) info;
+            bytes += imagesBytes(stream.getThumbnails())
+                    + imagesBytes(stream.getUploaderAvatars())
+                    + stringBytes(stream.getUploaderName()) + stringBytes(stream.getUploaderUrl())
+                    + stringBytes(stream.getDashMpdUrl()) + stringBytes(stream.getHlsUrl())
+                    + streamsBytes(stream.getVideoStreams())
+                    + streamsBytes(stream.getAudioStreams())
+                    + streamsBytes(stream.getVideoOnlyStreams())
+                    + streamsBytes(stream.getSubtitles());
+            if (stream.getDescription() != null) {
+                bytes += stringBytes(stream.getDescription().getContent());
+            }
+            for (final InfoItem item : stream.getRelatedItems()) {
+                bytes += itemBytes(item);
+            }
+        }
+        if (info instanceof ListInfo) {
+            for (final Object item : ((ListInfo<?>) info).getRelatedItems()) {
+                if (item instanceof InfoItem) {
+                    bytes += itemBytes((InfoItem) item);
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long itemBytes(@NonNull final InfoItem item) {
+        long bytes = ITEM_OVERHEAD_BYTES + stringBytes(item.getName())
+                + stringBytes(item.getUrl()) + imagesBytes(item.getThumbnails());
+        if (item instanceof StreamInfoItem) {
+            final StreamInfoItem stream = (StreamInfoItem) item;
+            bytes += stringBytes(stream.getUploaderName()) + stringBytes(stream.getUploaderUrl())
+                    + stringBytes(stream.getTextualUploadDate())
+                    + stringBytes(stream.getShortDescription())
+                    + imagesBytes(stream.getUploaderAvatars());
+        }
+        return bytes;
+    }
+
+    private static long streamsBytes(@Nullable final List<? extends Stream> streams) {
+        if (streams == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (final Stream stream : streams) {
+            bytes += STREAM_OVERHEAD_BYTES + stringBytes(stream.getContent());
+        }
+        return bytes;
+    }
+
+    private static long imagesBytes(@Nullable final List<Image> images) {
+        if (images == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (final Image image : images) {
+            bytes += IMAGE_OVERHEAD_BYTES + stringBytes(image.getUrl());
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(@Nullable final String string) {
+        // object headers plus two bytes per char in the worst case (non-Latin-1 text)
+        return string == null ? 0 : 40 + 2L * string.length();
+    }
+}
@@ -0,0 +1,197 @@
+package org.schabi.newpipe.util.image;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.DisplayMetrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+import androidx.core.graphics.BitmapCompat;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+import com.squareup.picasso.Cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picasso memory cache sized from the device instead of a fixed number of bytes: from the app's
+ * heap limit ({@link ActivityManager#getMemoryClass()}) and from how many bytes the thumbnails
+ * and avatars of the feed list take at the screen's size and density.
+ * <br>
+ * Avatars and thumbnails have separate budgets, so that scrolling through many large thumbnails
+ * does not evict the few small avatars which are shown again and again. Picasso's keys do not
+ * tell which kind an image is, so square bitmaps count as avatars, since the feed list crops
+ * avatars to a square and thumbnails to a wide rectangle.
+ * <br>
+ * Hits and misses are counted in {@link MetricsRegistry} as {@code image.memory.hit} and
+ * {@code image.memory.miss}.
+ */
+public final class ImageMemoryCache implements Cache {
+
+    // Picasso's own default share of the heap, less on low-RAM devices
+    private static final int HEAP_SHARE_DIVISOR = 7;
+    private static final int LOW_RAM_HEAP_SHARE_DIVISOR = 12;
+    // the avatar budget never takes more than this share of the total
+    private static final int AVATAR_SHARE_DIVISOR = 4;
+    private static final int MIN_BUDGET_BYTES = 2 * 1024 * 1024;
+
+    // sizes in item_video.xml, and how many items' images should stay in memory: enough for a
+    // few screens of scrolling back, with avatars repeating more often than thumbnails
+    private static final int THUMBNAIL_HEIGHT_DP = 250;
+    private static final int AVATAR_SIZE_DP = 40;
+    private static final int THUMBNAILS_TO_KEEP = 24;
+    private static final int AVATARS_TO_KEEP = 100;
+    // PicassoHelper decodes with Bitmap.Config.RGB_565
+    private static final int BYTES_PER_PIXEL = 2;
+
+    private final BitmapLruCache thumbnails;
+    private final BitmapLruCache avatars;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private static final class BitmapLruCache extends LruCache<String, Bitmap> {
+        BitmapLruCache(final int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        protected int sizeOf(@NonNull final String key, @NonNull final Bitmap value) {
+            return BitmapCompat.getAllocationByteCount(value);
+        }
+    }
+
+    private ImageMemoryCache(final int thumbnailBudgetBytes, final int avatarBudgetBytes) {
+        thumbnails = new BitmapLruCache(thumbnailBudgetBytes);
+        avatars = new BitmapLruCache(avatarBudgetBytes);
+    }
+
+    @NonNull
+    public static ImageMemoryCache create(@NonNull final Context context) {
+        final ActivityManager activityManager = context.getSystemService(ActivityManager.class);
+        final long heapBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        final long totalBudget = Math.max(MIN_BUDGET_BYTES, heapBytes
+                / (activityManager.isLowRamDevice()
+                        ? LOW_RAM_HEAP_SHARE_DIVISOR : HEAP_SHARE_DIVISOR));
+
+        final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        final long thumbnailBytes = (long) metrics.widthPixels
+                * Math.round(THUMBNAIL_HEIGHT_DP * metrics.density) * BYTES_PER_PIXEL;
+        final long avatarSide = Math.round(AVATAR_SIZE_DP * metrics.density);
+        final long avatarBytes = avatarSide * avatarSide * BYTES_PER_PIXEL;
+
+        final long avatarBudget = Math.min(totalBudget / AVATAR_SHARE_DIVISOR,
+                AVATARS_TO_KEEP * avatarBytes);
+        final long thumbnailBudget = Math.min(totalBudget - avatarBudget,
+                THUMBNAILS_TO_KEEP * thumbnailBytes);
+        return new ImageMemoryCache((int) thumbnailBudget, (int) avatarBudget);
+    }
+
+    private static boolean isAvatar(@NonNull final Bitmap bitmap) {
+        return bitmap.getWidth() == bitmap.getHeight();
+    }
+
+    @Nullable
+    @Override
+    public Bitmap get(@NonNull final String key) {
+        Bitmap bitmap = thumbnails.get(key);
+        if (bitmap == null) {
+            bitmap = avatars.get(key);
+        }
+
+        if (bitmap == null) {
+            missCount.incrementAndGet();
+            MetricsRegistry.getInstance().counter("image.memory.miss").incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+            MetricsRegistry.getInstance().counter("image.memory.hit").incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    @Override
+    public void set(@NonNull final String key, @NonNull final Bitmap bitmap) {
+        if (isAvatar(bitmap)) {
+            thumbnails.remove(key);
+            avatars.put(key, bitmap);
+        } else {
+            avatars.remove(key);
+            thumbnails.put(key, bitmap);
+        }
+    }
+
+    @Override
+    public int size() {
+        return thumbnails.size() + avatars.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return thumbnails.maxSize() + avatars.maxSize();
+    }
+
+    @Override
+    public void clear() {
+        thumbnails.evictAll();
+        avatars.evictAll();
+    }
+
+    @Override
+    public void clearKeyUri(@NonNull final String uri) {
+        clearKeyUri(thumbnails, uri);
+        clearKeyUri(avatars, uri);
+    }
+
+    /**
+     * Removes all variants of the image, whose keys are the URI followed by a newline and
+     * e.g. the size it was resized to.
+     */
+    private static void clearKeyUri(@NonNull final BitmapLruCache cache,
+                                    @NonNull final String uri) {
+        for (final String key : cache.snapshot().keySet()) {
+            if (key.startsWith(uri) && key.length() > uri.length()
+                    && key.charAt(uri.length()) == '\n') {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Frees memory according to a level passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * Thumbnails go first, since avatars are few, small and shown on many items.
+     */
+    public void onTrimMemory(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            thumbnails.evictAll();
+            avatars.trimToSize(avatars.maxSize() / 2);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            thumbnails.trimToSize(thumbnails.maxSize() / 4);
+        } else {
+            // TRIM_MEMORY_RUNNING_MODERATE and TRIM_MEMORY_UI_HIDDEN
+            thumbnails.trimToSize(thumbnails.maxSize() / 2);
+        }
+    }
+
+    /**
+     * @return the share of lookups which found their image, or 0 if there were none yet
+     */
+    public double getHitRate() {
+        final long hits = hitCount.get();
+        final long lookups = hits + missCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
@@ -6,6 +6,8 @@ import static org.schabi.newpipe.extractor.Image.WIDTH_UNKNOWN;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.nidoham.skymate.network.BandwidthEstimator;
+
 import org.schabi.newpipe.extractor.Image;
 
 import java.util.Comparator;
@@ -116,8 +118,10 @@ public final class ImageStrategy {
 
     /**
      * Chooses an image amongst the provided list based on the user preference previously set with
-     * {@link #setPreferredImageQuality(PreferredImageQuality)}. {@code null} will be returned in
-     * case the list is empty or the user preference is to not show images.
+     * {@link #setPreferredImageQuality(PreferredImageQuality)}, lowered to the
+     * {@link BandwidthEstimator.QualityTier} of the current network if that is lower.
+     * {@code null} will be returned in case the list is empty or the user preference is to not
+     * show images.
      * <br>
      * These properties will be preferred, from most to least important:
      * <ol>
@@ -143,7 +147,12 @@ public final class ImageStrategy {
             return null; // do not load images
         }
 
-        return choosePreferredImage(images, preferredImageQuality);
+        // never above the user preference, but lower on slow networks to keep the feed responsive
+        final PreferredImageQuality networkQuality =
+                BandwidthEstimator.getInstance().getQualityTier().getMaxImageQuality();
+        return choosePreferredImage(images,
+                networkQuality.compareTo(preferredImageQuality) < 0
+                        ? networkQuality : preferredImageQuality);
     }
 
     /**
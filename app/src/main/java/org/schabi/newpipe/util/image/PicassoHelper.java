@@ -14,14 +14,13 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.graphics.BitmapCompat;
 
-import com.squareup.picasso.Cache;
-import com.squareup.picasso.LruCache;
 import com.squareup.picasso.OkHttp3Downloader;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.RequestCreator;
 import com.squareup.picasso.Transformation;
 
 import com.nidoham.skymate.R;
+import com.nidoham.skymate.network.HttpCore;
 import org.schabi.newpipe.extractor.Image;
 
 import java.io.File;
@@ -39,7 +38,7 @@ public final class PicassoHelper {
     private PicassoHelper() {
     }
 
-    private static Cache picassoCache;
+    private static ImageMemoryCache picassoCache;
     private static OkHttpClient picassoDownloaderClient;
 
     // suppress because terminate() is called in App.onTerminate(), preventing leaks
@@ -48,8 +47,10 @@ public final class PicassoHelper {
 
 
     public static void init(final Context context) {
-        picassoCache = new LruCache(10 * 1024 * 1024);
-        picassoDownloaderClient = new OkHttpClient.Builder()
+        picassoCache = ImageMemoryCache.create(context);
+        // built on the shared HTTP core, so connections to image hosts are pooled together with
+        // the extractor ones instead of needing their own TLS handshakes
+        picassoDownloaderClient = HttpCore.newImageClientBuilder()
                 .cache(new okhttp3.Cache(new File(context.getExternalCacheDir(), "picasso"),
                         50L * 1024L * 1024L))
                 // this should already be the default timeout in OkHttp3, but just to be sure...
@@ -83,6 +84,22 @@ public final class PicassoHelper {
         init(context);
     }
 
+    /**
+     * @see ImageMemoryCache#onTrimMemory(int)
+     */
+    public static void onTrimMemory(final int level) {
+        if (picassoCache != null) {
+            picassoCache.onTrimMemory(level);
+        }
+    }
+
+    /**
+     * @return the share of image loads served from memory, or 0 before {@link #init(Context)}
+     */
+    public static double getMemoryCacheHitRate() {
+        return picassoCache == null ? 0 : picassoCache.getHitRate();
+    }
+
     public static void cancelTag(final Object tag) {
         picassoInstance.cancelTag(tag);
     }
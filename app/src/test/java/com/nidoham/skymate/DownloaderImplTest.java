@@ -0,0 +1,160 @@
+package com.nidoham.skymate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * The reCAPTCHA flow of {@link DownloaderImpl}: a {@code 429} holds back further requests while
+ * a challenge is shown, and solving or cancelling it releases them.
+ */
+public class DownloaderImplTest {
+
+    private final MockWebServer server = new MockWebServer();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> challenges = new CopyOnWriteArrayList<>();
+    private DownloaderImpl downloader;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        downloader = DownloaderImpl.init(new OkHttpClient.Builder());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void heldRequestIsSentOnceChallengeIsSolved() throws Exception {
+        showChallenges();
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        assertChallenged("/first");
+        assertEquals(1, challenges.size());
+        final Future<Response> held = submitGet("/second");
+        assertHeld(held);
+
+        downloader.onReCaptchaResult(true);
+        assertEquals("ok", held.get(5, TimeUnit.SECONDS).responseBody());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void heldRequestIsSentWithCookiesOfSolvedChallenge() throws Exception {
+        showChallenges();
+        downloader.setCookie("recaptcha_cookies", "OLD=1");
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        assertChallenged("/first");
+        final Future<Response> held = submitGet("/second");
+        assertHeld(held);
+
+        downloader.setCookie("recaptcha_cookies", "GOOGLE_ABUSE_EXEMPTION=solved");
+        downloader.onReCaptchaResult(true);
+        assertEquals("ok", held.get(5, TimeUnit.SECONDS).responseBody());
+        assertEquals("OLD=1", server.takeRequest().getHeader("Cookie"));
+        assertEquals("GOOGLE_ABUSE_EXEMPTION=solved", server.takeRequest().getHeader("Cookie"));
+    }
+
+    @Test
+    public void heldRequestFailsOnceChallengeIsCancelled() throws Exception {
+        showChallenges();
+        server.enqueue(new MockResponse().setResponseCode(429));
+
+        assertChallenged("/first");
+        final Future<Response> held = submitGet("/second");
+        assertHeld(held);
+
+        downloader.onReCaptchaResult(false);
+        try {
+            held.get(5, TimeUnit.SECONDS);
+            fail("expected the held request to fail");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof ReCaptchaException);
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void requestsAreNotHeldWithoutHandler() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        assertChallenged("/first");
+        assertEquals("ok", submitGet("/second").get(5, TimeUnit.SECONDS).responseBody());
+    }
+
+    @Test
+    public void requestsAreNotHeldIfHandlerDeclines() throws Exception {
+        downloader.setReCaptchaHandler(url -> {
+            challenges.add(url);
+            return false; // e.g. the app is in the background
+        });
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        assertChallenged("/first");
+        assertEquals(1, challenges.size());
+        assertEquals("ok", submitGet("/second").get(5, TimeUnit.SECONDS).responseBody());
+    }
+
+    private void showChallenges() {
+        downloader.setReCaptchaHandler(url -> {
+            challenges.add(url);
+            return true;
+        });
+    }
+
+    private void assertChallenged(final String path) throws IOException {
+        try {
+            downloader.execute(get(path));
+            fail("expected a reCAPTCHA challenge");
+        } catch (final ReCaptchaException e) {
+            assertEquals(server.url(path).toString(), e.getUrl());
+        }
+    }
+
+    private static void assertHeld(final Future<Response> future) throws Exception {
+        try {
+            future.get(300, TimeUnit.MILLISECONDS);
+            fail("expected the request to be held");
+        } catch (final TimeoutException expected) {
+            assertFalse(future.isDone());
+        }
+    }
+
+    private Future<Response> submitGet(final String path) {
+        return executor.submit(() -> downloader.execute(get(path)));
+    }
+
+    private Request get(final String path) {
+        return Request.newBuilder().get(server.url(path).toString()).build();
+    }
+}
@@ -0,0 +1,200 @@
+package com.nidoham.skymate.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+public class SegmentedDownloadTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final int CHUNK_SIZE = 10_000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private final OkHttpClient client = new OkHttpClient();
+    private final byte[] content = new byte[100_000];
+    /** How many bytes of each range the server sends before closing the connection. */
+    private volatile int truncateTo = Integer.MAX_VALUE;
+    /** If not -1, only the range starting there is truncated. */
+    private volatile int truncateOnlyAt = -1;
+    /** Counted down by each request, which then waits a moment for the others. */
+    private volatile CountDownLatch arrivals = new CountDownLatch(0);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(content);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                final Matcher range = RANGE.matcher(request.getHeader("Range"));
+                if (!range.matches()) {
+                    return new MockResponse().setResponseCode(416);
+                }
+                ranges.add(request.getHeader("Range"));
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                arrivals.countDown();
+                try {
+                    arrivals.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+
+                final int start = Integer.parseInt(range.group(1));
+                final int end = Integer.parseInt(range.group(2)) + 1;
+                final int length = truncateOnlyAt == -1 || truncateOnlyAt == start
+                        ? Math.min(end - start, truncateTo) : end - start;
+                final MockResponse response = new MockResponse().setResponseCode(206)
+                        .setBody(new Buffer().write(content, start, length));
+                if (length < end - start) {
+                    // claim the full range, so that the client notices the early end
+                    response.setHeader("Content-Length", end - start)
+                            .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END);
+                }
+                return response;
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void downloadsWholeFile() throws Exception {
+        final File target = folder.newFile("video.mp4");
+        final long[] reported = new long[2];
+
+        newDownload(target).run(content.length, (downloaded, total) -> {
+            reported[0] = downloaded;
+            reported[1] = total;
+        });
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertEquals(content.length, reported[0]);
+        assertEquals(content.length, reported[1]);
+        assertFalse(progressFileOf(target).exists());
+    }
+
+    @Test
+    public void keepsProgressOfTruncatedDownload() throws Exception {
+        final File target = folder.newFile("video.mp4");
+        truncateTo = 1000;
+
+        try {
+            newDownload(target).run(content.length, null);
+            fail("expected the download to fail");
+        } catch (final IOException expected) {
+            // the connection closed early
+        }
+        assertTrue(progressFileOf(target).exists());
+
+        truncateTo = Integer.MAX_VALUE;
+        newDownload(target).run(content.length, null);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertFalse(progressFileOf(target).exists());
+    }
+
+    @Test
+    public void downloadsChunksOverParallelConnections() throws Exception {
+        final File target = folder.newFile("video.mp4");
+        arrivals = new CountDownLatch(2); // the first two ranges only proceed together
+
+        newChunkedDownload(target, 4).run(content.length, null);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertTrue("expected concurrent range requests", maxInFlight.get() >= 2);
+        assertEquals(content.length / CHUNK_SIZE, ranges.size());
+        assertTrue(ranges.contains("bytes=90000-99999"));
+    }
+
+    @Test
+    public void resumesOnlyUnfinishedChunks() throws Exception {
+        final File target = folder.newFile("video.mp4");
+        truncateTo = 1000;
+        truncateOnlyAt = 3 * CHUNK_SIZE;
+
+        try {
+            // a single connection fetches the chunks in order, so the first three are complete
+            newChunkedDownload(target, 1).run(content.length, null);
+            fail("expected the download to fail");
+        } catch (final IOException expected) {
+            // the connection closed early
+        }
+        assertEquals(List.of("bytes=0-9999", "bytes=10000-19999", "bytes=20000-29999",
+                "bytes=30000-39999"), ranges);
+
+        ranges.clear();
+        truncateOnlyAt = -1;
+        truncateTo = Integer.MAX_VALUE;
+        newChunkedDownload(target, 4).run(content.length, null);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertFalse(progressFileOf(target).exists());
+        assertEquals(7, ranges.size());
+        assertTrue(ranges.contains("bytes=31000-39999"));
+        assertFalse(ranges.contains("bytes=0-9999"));
+    }
+
+    @Test
+    public void pausesWhenNetworkIsNotAllowed() throws Exception {
+        final File target = folder.newFile("video.mp4");
+
+        try {
+            new SegmentedDownload(client, server.url("/video").toString(), target, () -> false)
+                    .run(content.length, null);
+            fail("expected the download to pause");
+        } catch (final SegmentedDownload.PausedException expected) {
+            // expected
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private SegmentedDownload newDownload(final File target) {
+        return new SegmentedDownload(client, server.url("/video").toString(), target, () -> true);
+    }
+
+    private SegmentedDownload newChunkedDownload(final File target, final int connections) {
+        return new SegmentedDownload(client, server.url("/video").toString(), target, () -> true,
+                connections, CHUNK_SIZE);
+    }
+
+    private static File progressFileOf(final File target) {
+        return new File(target.getPath() + SegmentedDownload.PROGRESS_SUFFIX);
+    }
+}
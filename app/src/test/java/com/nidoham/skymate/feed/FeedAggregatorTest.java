@@ -0,0 +1,90 @@
+package com.nidoham.skymate.feed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.localization.DateWrapper;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FeedAggregatorTest {
+
+    @Test
+    public void mergesChannelsNewestFirst() {
+        final List<FeedAggregator.ChannelFeed> feeds = List.of(
+                feed(video("a", 50), video("b", 30), video("c", 10)),
+                feed(video("d", 40), video("e", 20)),
+                feed(video("f", 60)));
+
+        assertEquals(List.of("f", "a", "d", "b", "e", "c"),
+                namesOf(FeedAggregator.merge(feeds, 100)));
+    }
+
+    @Test
+    public void sortsEachChannelBeforeMerging() {
+        // e.g. a pinned video comes first on the channel page although it is older
+        final List<FeedAggregator.ChannelFeed> feeds = List.of(
+                feed(video("pinned", 5), video("new", 50), video("old", 10)));
+
+        assertEquals(List.of("new", "old", "pinned"), namesOf(FeedAggregator.merge(feeds, 100)));
+    }
+
+    @Test
+    public void putsVideosWithoutUploadDateLast() {
+        final List<FeedAggregator.ChannelFeed> feeds = List.of(
+                feed(video("undated", -1), video("a", 10)),
+                feed(video("b", 20)));
+
+        assertEquals(List.of("b", "a", "undated"), namesOf(FeedAggregator.merge(feeds, 100)));
+    }
+
+    @Test
+    public void stopsAtLimit() {
+        final List<FeedAggregator.ChannelFeed> feeds = List.of(
+                feed(video("a", 30), video("b", 10)),
+                feed(video("c", 20)));
+
+        assertEquals(List.of("a", "c"), namesOf(FeedAggregator.merge(feeds, 2)));
+    }
+
+    @Test
+    public void handlesEmptyChannels() {
+        assertTrue(FeedAggregator.merge(List.of(), 100).isEmpty());
+        assertEquals(List.of("a"), namesOf(FeedAggregator.merge(
+                List.of(feed(), feed(video("a", 10)), feed()), 100)));
+    }
+
+    private static FeedAggregator.ChannelFeed feed(final InfoItem... items) {
+        return new FeedAggregator.ChannelFeed(Arrays.asList(items));
+    }
+
+    /**
+     * @param uploadSeconds the upload time in seconds since the epoch, or -1 if it is unknown
+     */
+    private static StreamInfoItem video(final String name, final long uploadSeconds) {
+        final StreamInfoItem item = new StreamInfoItem(0,
+                "https://www.youtube.com/watch?v=" + name, name, StreamType.VIDEO_STREAM);
+        if (uploadSeconds >= 0) {
+            item.setUploadDate(new DateWrapper(OffsetDateTime.ofInstant(
+                    Instant.ofEpochSecond(uploadSeconds), ZoneOffset.UTC)));
+        }
+        return item;
+    }
+
+    private static List<String> namesOf(final List<StreamInfoItem> items) {
+        final List<String> names = new ArrayList<>();
+        for (final StreamInfoItem item : items) {
+            names.add(item.getName());
+        }
+        return names;
+    }
+}
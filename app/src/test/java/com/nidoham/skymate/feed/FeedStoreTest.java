@@ -0,0 +1,101 @@
+package com.nidoham.skymate.feed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class FeedStoreTest {
+
+    private static final String SOURCE = "kiosk:0:Trending";
+
+    private final FeedStore store = new FeedStore(RuntimeEnvironment.getApplication());
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void firstPageStartsGeneration() {
+        store.putFirstPage(SOURCE, items("a", "b", "c"));
+
+        final FeedStore.Snapshot snapshot = store.snapshot(SOURCE, 2);
+        assertEquals(1, snapshot.generation);
+        assertEquals(3, snapshot.size);
+        assertEquals(List.of("a", "b"), urls(snapshot.firstPage));
+        assertEquals(List.of("c"), urls(store.query(SOURCE, snapshot.generation, 2, 2)));
+    }
+
+    @Test
+    public void reloadReplacesPreviousGeneration() {
+        store.putFirstPage(SOURCE, items("a", "b", "c"));
+        final long oldGeneration = store.snapshot(SOURCE, 0).generation;
+
+        store.putFirstPage(SOURCE, items("d", "a"));
+
+        final FeedStore.Snapshot snapshot = store.snapshot(SOURCE, 10);
+        assertEquals(oldGeneration + 1, snapshot.generation);
+        assertEquals(2, snapshot.size);
+        assertEquals(List.of("d", "a"), urls(snapshot.firstPage));
+        // pages of the old snapshot are simply gone, not mixed with the new items
+        assertTrue(store.query(SOURCE, oldGeneration, 0, 10).isEmpty());
+    }
+
+    @Test
+    public void appendKeepsGeneration() {
+        store.putFirstPage(SOURCE, items("a", "b"));
+        final long generation = store.snapshot(SOURCE, 0).generation;
+
+        store.appendPage(SOURCE, items("b", "c"));
+
+        final FeedStore.Snapshot snapshot = store.snapshot(SOURCE, 10);
+        assertEquals(generation, snapshot.generation);
+        assertEquals(3, snapshot.size);
+        assertEquals(List.of("a", "b", "c"), urls(snapshot.firstPage));
+    }
+
+    @Test
+    public void queryBeyondEndIsEmpty() {
+        store.putFirstPage(SOURCE, items("a", "b"));
+        final long generation = store.snapshot(SOURCE, 0).generation;
+
+        assertTrue(store.query(SOURCE, generation, 2, 10).isEmpty());
+        assertTrue(store.query("kiosk:0:Other", generation, 0, 10).isEmpty());
+    }
+
+    @Test
+    public void sourcesAreIndependent() {
+        store.putFirstPage(SOURCE, items("a", "b"));
+        store.putFirstPage("kiosk:0:Other", items("c"));
+
+        assertEquals(2, store.snapshot(SOURCE, 0).size);
+        assertEquals(List.of("c"), urls(store.snapshot("kiosk:0:Other", 10).firstPage));
+    }
+
+    private static List<StreamInfoItem> items(final String... urls) {
+        final List<StreamInfoItem> items = new ArrayList<>();
+        for (final String url : urls) {
+            items.add(new StreamInfoItem(0, url, "Video " + url, StreamType.VIDEO_STREAM));
+        }
+        return items;
+    }
+
+    private static List<String> urls(final List<StreamInfoItem> items) {
+        final List<String> urls = new ArrayList<>();
+        for (final StreamInfoItem item : items) {
+            urls.add(item.getUrl());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,105 @@
+package com.nidoham.skymate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class HistogramTest {
+
+    private final Histogram histogram = new Histogram();
+
+    @Test
+    public void isEmptyInitially() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void tracksCountMeanAndMax() {
+        histogram.record(10);
+        histogram.record(20);
+        histogram.record(-5); // negative durations count as 0
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(20, histogram.getMax());
+        assertEquals(10, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void percentilesAreWithinBucketError() {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertWithinBucketError(500, histogram.getPercentile(50));
+        assertWithinBucketError(950, histogram.getPercentile(95));
+        assertWithinBucketError(990, histogram.getPercentile(99));
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void percentileIsCappedAtMax() {
+        histogram.record(1001);
+
+        assertEquals(1001, histogram.getPercentile(50));
+        assertEquals(1001, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void countsHugeValuesInLastBucket() {
+        histogram.record(Long.MAX_VALUE / 2);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(Long.MAX_VALUE / 2, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void recordsConcurrently() throws Exception {
+        final int threads = 4;
+        final int perThread = 10_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(i % 100);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, histogram.getCount());
+        assertEquals(99, histogram.getMax());
+    }
+
+    private static void assertWithinBucketError(final long expected, final long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                actual >= expected && actual <= Math.ceil(expected * 1.25));
+    }
+}
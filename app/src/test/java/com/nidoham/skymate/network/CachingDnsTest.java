@@ -0,0 +1,78 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dns;
+
+public class CachingDnsTest {
+
+    private static final String HOST = "www.youtube.com";
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final Map<String, List<InetAddress>> answers = new ConcurrentHashMap<>();
+    private final Dns resolver = hostname -> {
+        lookups.incrementAndGet();
+        final List<InetAddress> addresses = answers.get(hostname);
+        if (addresses == null) {
+            throw new UnknownHostException(hostname);
+        }
+        return addresses;
+    };
+    /** Background work, run by the test when it chooses to. */
+    private final List<Runnable> background = new ArrayList<>();
+    private final CachingDns dns = new CachingDns(resolver, background::add);
+
+    @Test
+    public void servesFreshAnswersFromMemory() throws Exception {
+        answers.put(HOST, address(HOST, 1));
+
+        assertEquals(address(HOST, 1), dns.lookup(HOST));
+        assertEquals(address(HOST, 1), dns.lookup(HOST));
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void failsForUnknownHost() {
+        try {
+            dns.lookup("unknown.invalid");
+            fail("expected the lookup to fail");
+        } catch (final UnknownHostException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void warmUpResolvesInBackground() throws Exception {
+        answers.put(HOST, address(HOST, 1));
+        answers.put("i.ytimg.com", address("i.ytimg.com", 2));
+
+        dns.warmUp(List.of(HOST, "i.ytimg.com"));
+        assertEquals(0, lookups.get());
+        for (final Runnable task : background) {
+            task.run();
+        }
+        assertEquals(2, lookups.get());
+
+        assertEquals(address(HOST, 1), dns.lookup(HOST));
+        assertEquals(address("i.ytimg.com", 2), dns.lookup("i.ytimg.com"));
+        assertEquals(2, lookups.get());
+    }
+
+    private static List<InetAddress> address(final String host, final int lastByte)
+            throws UnknownHostException {
+        return Collections.singletonList(
+                InetAddress.getByAddress(host, new byte[] {10, 0, 0, (byte) lastByte}));
+    }
+}
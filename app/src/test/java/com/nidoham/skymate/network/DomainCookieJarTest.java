@@ -0,0 +1,70 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class DomainCookieJarTest {
+
+    private static final String RESTRICTED_MODE_KEY = "youtube_restricted_mode_key";
+    private static final String RESTRICTED_MODE_COOKIE = "PREF=f2=8000000";
+    private static final String RECAPTCHA_KEY = "recaptcha_cookies";
+    private static final String RECAPTCHA_COOKIES =
+            "GOOGLE_ABUSE_EXEMPTION=ID=abc; PREF=f2=8000000";
+
+    private final DomainCookieJar jar = new DomainCookieJar();
+
+    @Test
+    public void sendsDomainCookiesOnlyToThatDomainAndItsSubdomains() {
+        jar.put(RESTRICTED_MODE_KEY, RESTRICTED_MODE_COOKIE, "youtube.com");
+
+        assertEquals(RESTRICTED_MODE_COOKIE, jar.getCookieHeader("youtube.com"));
+        assertEquals(RESTRICTED_MODE_COOKIE, jar.getCookieHeader("www.youtube.com"));
+        assertEquals("", jar.getCookieHeader("notyoutube.com"));
+        assertEquals("", jar.getCookieHeader("soundcloud.com"));
+    }
+
+    @Test
+    public void sendsUnscopedCookiesToEveryHostWithoutDuplicates() {
+        jar.put(RESTRICTED_MODE_KEY, RESTRICTED_MODE_COOKIE, "youtube.com");
+        jar.put(RECAPTCHA_KEY, RECAPTCHA_COOKIES, null);
+
+        // ordered by key, so the restricted mode cookie is part of the reCAPTCHA cookies
+        assertEquals(RECAPTCHA_COOKIES, jar.getCookieHeader("www.youtube.com"));
+        assertEquals(RECAPTCHA_COOKIES, jar.getCookieHeader("soundcloud.com"));
+    }
+
+    @Test
+    public void ordersCookiesByKey() {
+        jar.put("b", "x=1", null);
+        jar.put("a", "y=2", null);
+        jar.put("c", "z=3", null);
+
+        assertEquals("y=2; x=1; z=3", jar.getCookieHeader("youtube.com"));
+    }
+
+    @Test
+    public void changesInvalidateCachedHeaders() {
+        jar.put(RECAPTCHA_KEY, "a=b", null);
+        assertEquals("a=b", jar.getCookieHeader("youtube.com"));
+
+        jar.put(RECAPTCHA_KEY, "c=d", null);
+        assertEquals("c=d", jar.getCookieHeader("youtube.com"));
+
+        jar.remove(RECAPTCHA_KEY);
+        assertEquals("", jar.getCookieHeader("youtube.com"));
+        assertNull(jar.get(RECAPTCHA_KEY));
+    }
+
+    @Test
+    public void expiredCookiesAreNotSent() throws InterruptedException {
+        jar.put("expired", "a=b", null, System.currentTimeMillis() - 1);
+        jar.put("expiring", "c=d", null, System.currentTimeMillis() + 50);
+
+        assertNull(jar.get("expired"));
+        assertEquals("c=d", jar.getCookieHeader("youtube.com"));
+        Thread.sleep(100);
+        assertEquals("", jar.getCookieHeader("youtube.com"));
+    }
+}
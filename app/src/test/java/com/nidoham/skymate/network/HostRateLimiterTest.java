@@ -0,0 +1,188 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+
+public class HostRateLimiterTest {
+
+    private static final String HOST = "www.youtube.com";
+    private static final String URL = "https://www.youtube.com/watch?v=x";
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(SECOND_NANOS);
+    private final HostRateLimiter limiter = new HostRateLimiter(clock::get);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void allowsBurstOfInitialRate() throws Exception {
+        for (int i = 0; i < (int) HostRateLimiter.INITIAL_RATE; i++) {
+            limiter.acquire(HOST); // the clock stands still, so this would block without tokens
+        }
+    }
+
+    @Test
+    public void tryAcquireDoesNotWaitForTokens() {
+        for (int i = 0; i < (int) HostRateLimiter.INITIAL_RATE; i++) {
+            assertTrue(limiter.tryAcquire(HOST));
+        }
+        assertFalse(limiter.tryAcquire(HOST));
+
+        clock.addAndGet(SECOND_NANOS);
+        assertTrue(limiter.tryAcquire(HOST));
+    }
+
+    @Test
+    public void adaptsRateToResponses() {
+        limiter.onResponse(HOST, URL, 200, Headers.of());
+        assertEquals(HostRateLimiter.INITIAL_RATE + 0.25, limiter.getRate(HOST), 1e-9);
+
+        limiter.onResponse(HOST, URL, 503, Headers.of());
+        assertEquals((HostRateLimiter.INITIAL_RATE + 0.25) / 2, limiter.getRate(HOST), 1e-9);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onResponse(HOST, URL, 429, Headers.of());
+        }
+        assertEquals(HostRateLimiter.MIN_RATE, limiter.getRate(HOST), 1e-9);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onResponse(HOST, URL, 200, Headers.of());
+        }
+        assertEquals(HostRateLimiter.MAX_RATE, limiter.getRate(HOST), 1e-9);
+        assertEquals(HostRateLimiter.INITIAL_RATE, limiter.getRate("other.host"), 1e-9);
+    }
+
+    @Test
+    public void refillsTokensWithTime() throws Exception {
+        limiter.onResponse(HOST, URL, 503, Headers.of()); // no tokens left, 4 per second
+        final Future<?> acquired = executor.submit(() -> {
+            limiter.acquire(HOST);
+            return null;
+        });
+        assertBlocked(acquired);
+
+        clock.addAndGet(SECOND_NANOS);
+        acquired.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void parsesRetryAfter() {
+        assertEquals(0, HostRateLimiter.parseRetryAfterMillis(Headers.of()));
+        assertEquals(5000, HostRateLimiter.parseRetryAfterMillis(
+                Headers.of("Retry-After", "5")));
+        assertEquals(TimeUnit.MINUTES.toMillis(2), HostRateLimiter.parseRetryAfterMillis(
+                Headers.of("Retry-After", "86400")));
+        assertEquals(0, HostRateLimiter.parseRetryAfterMillis(
+                Headers.of("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT")));
+    }
+
+    @Test
+    public void doesNotHoldRequestsWithoutHandler() throws Exception {
+        limiter.onResponse(HOST, URL, 429, Headers.of());
+
+        assertFalse(limiter.isChallengePending());
+        clock.addAndGet(SECOND_NANOS);
+        limiter.acquire(HOST);
+    }
+
+    @Test
+    public void doesNotHoldRequestsIfHandlerDeclines() throws Exception {
+        final List<String> shown = new CopyOnWriteArrayList<>();
+        limiter.setChallengeHandler(url -> {
+            shown.add(url);
+            return false;
+        });
+
+        limiter.onResponse(HOST, URL, 429, Headers.of());
+
+        assertEquals(List.of(URL), shown);
+        assertFalse(limiter.isChallengePending());
+    }
+
+    @Test
+    public void holdsRequestsUntilChallengeIsSolved() throws Exception {
+        limiter.setChallengeHandler(url -> true);
+        limiter.onResponse(HOST, URL, 429, Headers.of());
+        assertTrue(limiter.isChallengePending());
+
+        final Future<?> held = executor.submit(() -> {
+            limiter.acquire(HOST);
+            return null;
+        });
+        assertBlocked(held);
+
+        clock.addAndGet(SECOND_NANOS);
+        limiter.resolveChallenges(true);
+        held.get(5, TimeUnit.SECONDS);
+        assertFalse(limiter.isChallengePending());
+    }
+
+    @Test
+    public void failsHeldRequestsIfChallengeIsCancelled() throws Exception {
+        limiter.setChallengeHandler(url -> true);
+        limiter.onResponse(HOST, URL, 429, Headers.of());
+
+        final Future<?> held = executor.submit(() -> {
+            limiter.acquire(HOST);
+            return null;
+        });
+        assertBlocked(held);
+
+        limiter.resolveChallenges(false);
+        try {
+            held.get(5, TimeUnit.SECONDS);
+            fail("expected the held request to fail");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof ReCaptchaException);
+            assertEquals(URL, ((ReCaptchaException) e.getCause()).getUrl());
+        }
+    }
+
+    @Test
+    public void showsOneChallengeAtATime() {
+        final List<String> shown = new CopyOnWriteArrayList<>();
+        limiter.setChallengeHandler(url -> {
+            shown.add(url);
+            return true;
+        });
+
+        limiter.onResponse(HOST, URL, 429, Headers.of());
+        limiter.onResponse("music.youtube.com", "https://music.youtube.com/", 429, Headers.of());
+        assertEquals(1, shown.size());
+
+        limiter.resolveChallenges(true);
+        limiter.onResponse(HOST, URL, 429, Headers.of());
+        assertEquals(2, shown.size());
+    }
+
+    private static void assertBlocked(final Future<?> future) throws Exception {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            fail("expected the call to block");
+        } catch (final TimeoutException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.schabi.newpipe.extractor.downloader.Downloader;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through {@link RecordingDownloader} and {@link ReplayDownloader}, and the fixture
+ * files they share.
+ */
+public class ReplayDownloaderTest {
+
+    private static final String VIDEO_URL = "https://www.youtube.com/watch?v=abc";
+    private static final String BROWSE_URL = "https://www.youtube.com/youtubei/v1/browse";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /** The responses the recorded downloader answers with, in order. */
+    private final Deque<Response> answers = new ArrayDeque<>();
+    private final Downloader network = new Downloader() {
+        @Override
+        public Response execute(final Request request) {
+            return answers.remove();
+        }
+    };
+
+    @Test
+    public void replaysRecordedResponses() throws Exception {
+        final File fixture = folder.newFile("fixture.bin");
+        answers.add(response(200, "first", VIDEO_URL));
+        answers.add(response(200, "second", VIDEO_URL));
+        answers.add(response(404, null, BROWSE_URL));
+        try (RecordingDownloader recorder = new RecordingDownloader(network, fixture)) {
+            recorder.execute(get(VIDEO_URL));
+            recorder.execute(get(VIDEO_URL));
+            recorder.execute(post(BROWSE_URL, "{\"continuation\":\"x\"}"));
+        }
+
+        final ReplayDownloader replay =
+                new ReplayDownloader(fixture, ReplayDownloader.Profile.INSTANT);
+        assertEquals(2, replay.getRecordedRequestCount());
+
+        final Response first = replay.execute(get(VIDEO_URL));
+        assertEquals(200, first.responseCode());
+        assertEquals("first", first.responseBody());
+        assertEquals(List.of("text/html"), first.responseHeaders().get("Content-Type"));
+        assertEquals(VIDEO_URL, first.latestUrl());
+        assertEquals("second", replay.execute(get(VIDEO_URL)).responseBody());
+        // the last recording is repeated, so that benchmarks can loop over a fixture
+        assertEquals("second", replay.execute(get(VIDEO_URL)).responseBody());
+
+        // bodies which differ from the recorded one fall back to the method and URL
+        final Response browse = replay.execute(post(BROWSE_URL, "{\"continuation\":\"y\"}"));
+        assertEquals(404, browse.responseCode());
+        assertNull(browse.responseBody());
+    }
+
+    @Test
+    public void failsForRequestsWhichWereNotRecorded() throws Exception {
+        final File fixture = folder.newFile("fixture.bin");
+        answers.add(response(200, "first", VIDEO_URL));
+        try (RecordingDownloader recorder = new RecordingDownloader(network, fixture)) {
+            recorder.execute(get(VIDEO_URL));
+        }
+
+        final ReplayDownloader replay =
+                new ReplayDownloader(fixture, ReplayDownloader.Profile.INSTANT);
+        try {
+            replay.execute(get(BROWSE_URL));
+            fail("expected no recorded response");
+        } catch (final IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void ignoresTruncatedLastRecord() throws Exception {
+        final File fixture = folder.newFile("fixture.bin");
+        answers.add(response(200, "first", VIDEO_URL));
+        answers.add(response(200, "x".repeat(10_000), BROWSE_URL));
+        final long firstRecordEnd;
+        try (RecordingDownloader recorder = new RecordingDownloader(network, fixture)) {
+            recorder.execute(get(VIDEO_URL));
+            // each record is flushed, so the file ends after it until the next one is written
+            firstRecordEnd = fixture.length();
+            recorder.execute(get(BROWSE_URL));
+        }
+
+        // as if the app was killed while writing the second record
+        try (RandomAccessFile file = new RandomAccessFile(fixture, "rw")) {
+            file.setLength(firstRecordEnd + (fixture.length() - firstRecordEnd) / 2);
+        }
+
+        final ReplayDownloader replay =
+                new ReplayDownloader(fixture, ReplayDownloader.Profile.INSTANT);
+        assertEquals(1, replay.getRecordedRequestCount());
+        assertEquals("first", replay.execute(get(VIDEO_URL)).responseBody());
+    }
+
+    @Test
+    public void rejectsCorruptFixture() throws Exception {
+        final File fixture = folder.newFile("fixture.bin");
+        Files.write(fixture.toPath(), "not a fixture".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            new ReplayDownloader(fixture, ReplayDownloader.Profile.INSTANT);
+            fail("expected the fixture to be rejected");
+        } catch (final IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void profilesDelayByLatencyAndBandwidth() {
+        assertEquals(0, ReplayDownloader.Profile.INSTANT.delayMillisFor(1_000_000));
+        assertEquals(20, new ReplayDownloader.Profile(20, 0).delayMillisFor(1_000_000));
+        assertEquals(520, new ReplayDownloader.Profile(20, 1000).delayMillisFor(500));
+        assertEquals(ReplayDownloader.Profile.SLOW_3G,
+                ReplayDownloader.Profile.forName("SLOW_3G"));
+        assertEquals(ReplayDownloader.Profile.INSTANT,
+                ReplayDownloader.Profile.forName("unknown"));
+    }
+
+    @Test
+    public void replayTakesTheProfileDelay() throws Exception {
+        final File fixture = folder.newFile("fixture.bin");
+        answers.add(response(200, "x".repeat(1000), VIDEO_URL));
+        try (RecordingDownloader recorder = new RecordingDownloader(network, fixture)) {
+            recorder.execute(get(VIDEO_URL));
+        }
+
+        // 50 ms latency plus 1000 bytes at 10 kB/s
+        final ReplayDownloader replay =
+                new ReplayDownloader(fixture, new ReplayDownloader.Profile(50, 10_000));
+        final long start = System.nanoTime();
+        replay.execute(get(VIDEO_URL));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+    }
+
+    private static Request get(final String url) {
+        return Request.newBuilder().get(url).build();
+    }
+
+    private static Request post(final String url, final String body) {
+        return Request.newBuilder().post(url, body.getBytes(StandardCharsets.UTF_8)).build();
+    }
+
+    private static Response response(final int code, final String body, final String url) {
+        return new Response(code, "", Map.of("Content-Type", List.of("text/html")), body, url);
+    }
+}
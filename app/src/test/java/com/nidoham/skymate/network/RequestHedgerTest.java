@@ -0,0 +1,111 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+
+import com.nidoham.skymate.metrics.MetricsRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class RequestHedgerTest {
+
+    private static final String METRICS_CLIENT = "hedger-test";
+
+    private final MockWebServer server = new MockWebServer();
+    private final OkHttpClient client = new OkHttpClient();
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+    private final HostRateLimiter limiter = new HostRateLimiter(clock::get);
+    private final RequestHedger hedger =
+            new RequestHedger(client, METRICS_CLIENT, limiter, 95, 1.0);
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        // a fast endpoint, so that a request without an answer after 50 ms is hedged
+        final HttpUrl url = server.url("/");
+        for (int i = 0; i < 20; i++) {
+            MetricsRegistry.getInstance().histogram("net." + METRICS_CLIENT + "." + url.host()
+                    + "." + NetworkEventRecorder.endpointClassOf(url) + ".ttfb").record(1);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void hedgesSlowRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(2, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+
+        assertEquals("fast", execute());
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(1, hedger.getHedgeWinCount());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotHedgeWithoutPermit() throws Exception {
+        while (limiter.tryAcquire(server.url("/").host())) {
+            // use up the host's permits, the clock stands still
+        }
+        server.enqueue(new MockResponse().setBody("slow")
+                .setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+
+        assertEquals("slow", execute());
+        assertEquals(0, hedger.getHedgeCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void releasesPermitAndConnectionOfLoser() throws Exception {
+        final HostConcurrencyLimiter hostLimiter = new HostConcurrencyLimiter(2);
+        final OkHttpClient limitedClient = new OkHttpClient.Builder()
+                .addInterceptor(hostLimiter)
+                .build();
+        final RequestHedger limitedHedger =
+                new RequestHedger(limitedClient, METRICS_CLIENT, limiter, 95, 1.0);
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(2, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+
+        assertEquals("fast", execute(limitedHedger));
+        assertEquals(1, limitedHedger.getHedgeWinCount());
+
+        // the cancelled primary gives its permit back and its connection is closed, while the
+        // hedge's connection went to a pool of its own instead of the client's
+        final String host = server.url("/").host();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((hostLimiter.availablePermits(host) < 2
+                || limitedClient.connectionPool().connectionCount() > 0)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, hostLimiter.availablePermits(host));
+        assertEquals(0, limitedClient.connectionPool().connectionCount());
+    }
+
+    private String execute() throws IOException {
+        return execute(hedger);
+    }
+
+    private String execute(final RequestHedger requestHedger) throws IOException {
+        final Request request = new Request.Builder().url(server.url("/")).build();
+        try (Response response = requestHedger.execute(request)) {
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+public class ResponseBodyReaderTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final ResponseBodyReader reader = new ResponseBodyReader();
+
+    @Test
+    public void readsBodyOfKnownLengthIntoOneArray() throws IOException {
+        final String text = text(300 * 1024);
+
+        final ResponseBodyReader.DecodedBody body = reader.read(body(text, true));
+
+        assertEquals(text, body.text);
+        assertEquals(text.length(), body.byteCount);
+        // the array sized from the Content-Length is exactly full, which must not make it grow
+        assertEquals(1, reader.getBufferAllocations());
+    }
+
+    @Test
+    public void reusesArraysForLaterBodies() throws IOException {
+        reader.read(body(text(100 * 1024), true));
+        reader.read(body(text(80 * 1024), true));
+
+        assertEquals(1, reader.getBufferAllocations());
+        assertEquals(180 * 1024, reader.getTotalBytesRead());
+    }
+
+    @Test
+    public void sizesBodiesOfUnknownLengthLikeThePreviousOne() throws IOException {
+        final String text = text(600 * 1024);
+
+        assertEquals(text, reader.read(body(text, false)).text);
+        final long allocations = reader.getBufferAllocations();
+        assertEquals(text, reader.read(body(text, false)).text);
+
+        assertEquals(allocations, reader.getBufferAllocations());
+    }
+
+    @Test
+    public void readsEmptyBody() throws IOException {
+        assertEquals("", reader.read(body("", true)).text);
+        assertEquals("", reader.read(body("", false)).text);
+    }
+
+    @Test
+    public void refusesBodyLargerThanMaximum() {
+        final ResponseBodyReader smallReader = new ResponseBodyReader(64 * 1024);
+        try {
+            smallReader.read(body(text(64 * 1024 + 1), false));
+            fail("expected the body to be refused");
+        } catch (final IOException expected) {
+            // expected
+        }
+        try {
+            smallReader.read(body(text(64 * 1024 + 1), true));
+            fail("expected the body to be refused");
+        } catch (final IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void acceptsBodyOfExactlyTheMaximum() throws IOException {
+        final ResponseBodyReader smallReader = new ResponseBodyReader(64 * 1024);
+        final String text = text(64 * 1024);
+
+        assertEquals(text, smallReader.read(body(text, false)).text);
+    }
+
+    @Test
+    public void decodesWithDeclaredCharset() throws IOException {
+        final String text = "Gr\u00fc\u00dfe";
+        final ResponseBody body = ResponseBody.create(
+                new Buffer().writeString(text, StandardCharsets.ISO_8859_1),
+                MediaType.get("text/plain; charset=iso-8859-1"), -1);
+
+        assertEquals(text, reader.read(body).text);
+    }
+
+    @Test
+    public void byteOrderMarkWinsOverDeclaredCharset() throws IOException {
+        final Buffer buffer = new Buffer()
+                .write(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF})
+                .writeUtf8("Gr\u00fc\u00dfe");
+        final ResponseBody body = ResponseBody.create(buffer,
+                MediaType.get("text/plain; charset=iso-8859-1"), buffer.size());
+
+        assertEquals("Gr\u00fc\u00dfe", reader.read(body).text);
+    }
+
+    private static ResponseBody body(final String text, final boolean knownLength) {
+        final Buffer buffer = new Buffer().writeUtf8(text);
+        return ResponseBody.create(buffer, JSON, knownLength ? buffer.size() : -1);
+    }
+
+    private static String text(final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        return builder.toString();
+    }
+}
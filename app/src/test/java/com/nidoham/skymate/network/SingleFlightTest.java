@@ -0,0 +1,200 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class SingleFlightTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final SingleFlight<Object> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void coalescesConcurrentCalls() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object result = new Object();
+        final SingleFlight.Loader<Object> loader = () -> {
+            awaitUninterruptibly(release);
+            return result;
+        };
+
+        final Future<Object> leader = submit("key", loader);
+        waitUntil(() -> singleFlight.getInFlightCount() == 1);
+        final List<Future<Object>> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            followers.add(submit("key", loader));
+        }
+        waitUntil(() -> singleFlight.getCoalescedCount() == 3);
+        release.countDown();
+
+        assertSame(result, leader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (final Future<Object> follower : followers) {
+            assertSame(result, follower.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        assertEquals(1, singleFlight.getExecutedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void doesNotCoalesceDifferentKeys() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final SingleFlight.Loader<Object> loader = () -> {
+            awaitUninterruptibly(release);
+            return new Object();
+        };
+
+        final Future<Object> first = submit("a", loader);
+        final Future<Object> second = submit("b", loader);
+        waitUntil(() -> singleFlight.getInFlightCount() == 2);
+        release.countDown();
+
+        first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(2, singleFlight.getExecutedCount());
+        assertEquals(0, singleFlight.getCoalescedCount());
+    }
+
+    @Test
+    public void forgetsKeyOnceCompleted() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+
+        singleFlight.execute("key", loads::incrementAndGet);
+        singleFlight.execute("key", loads::incrementAndGet);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void sharesFailureWithFollowers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final SingleFlight.Loader<Object> loader = () -> {
+            awaitUninterruptibly(release);
+            throw new IOException("boom");
+        };
+
+        final Future<Object> leader = submit("key", loader);
+        waitUntil(() -> singleFlight.getInFlightCount() == 1);
+        final Future<Object> follower = submit("key", loader);
+        waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+        release.countDown();
+
+        assertEquals("boom", failure(leader).getMessage());
+        assertEquals("boom", failure(follower).getMessage());
+        assertEquals(1, singleFlight.getExecutedCount());
+    }
+
+    @Test
+    public void followerRetriesWhenLeaderIsInterrupted() throws Exception {
+        final Object result = new Object();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final SingleFlight.Loader<Object> loader = () -> {
+            if (loads.incrementAndGet() == 1) {
+                leaderStarted.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            return result;
+        };
+
+        final Future<Object> leader = submit("key", loader);
+        assertTrue(leaderStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final Future<Object> follower = submit("key", loader);
+        waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+        leader.cancel(true);
+
+        assertSame(result, follower.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+        assertEquals(2, singleFlight.getExecutedCount());
+    }
+
+    @Test
+    public void socketTimeoutOfLeaderIsNotRetried() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final SingleFlight.Loader<Object> loader = () -> {
+            loads.incrementAndGet();
+            awaitUninterruptibly(release);
+            throw new SocketTimeoutException("timeout");
+        };
+
+        final Future<Object> leader = submit("key", loader);
+        waitUntil(() -> singleFlight.getInFlightCount() == 1);
+        final Future<Object> follower = submit("key", loader);
+        waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+        release.countDown();
+
+        failure(leader);
+        assertEquals("timeout", failure(follower).getMessage());
+        assertEquals(1, loads.get());
+    }
+
+    private Future<Object> submit(final String key, final SingleFlight.Loader<Object> loader) {
+        return executor.submit(() -> singleFlight.execute(key, loader));
+    }
+
+    private static Throwable failure(final Future<Object> future) throws Exception {
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            return e.getCause();
+        }
+        fail("expected a failure");
+        return null;
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
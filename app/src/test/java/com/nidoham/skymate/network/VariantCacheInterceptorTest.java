@@ -0,0 +1,120 @@
+package com.nidoham.skymate.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class VariantCacheInterceptorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        client = new OkHttpClient.Builder()
+                .cache(new Cache(folder.newFolder("cache"), 1024 * 1024))
+                .addNetworkInterceptor(new VariantCacheInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void servesCachedResponseToTheSameVariant() throws Exception {
+        server.enqueue(cacheable("unrestricted"));
+
+        assertEquals("unrestricted", get("u:US:en", null));
+        assertEquals("unrestricted", get("u:US:en", null));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotServeCachedResponseToAnotherVariant() throws Exception {
+        server.enqueue(cacheable("unrestricted"));
+        server.enqueue(cacheable("restricted"));
+        server.enqueue(cacheable("unrestricted again"));
+
+        assertEquals("unrestricted", get("u:US:en", null));
+        assertEquals("restricted", get("r:US:en", null));
+        assertEquals("restricted", get("r:US:en", null));
+        assertEquals("unrestricted again", get("u:US:en", null));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void maxStaleDoesNotServeAnotherVariant() throws Exception {
+        server.enqueue(new MockResponse().setBody("unrestricted").setHeader("Cache-Control",
+                "max-age=0"));
+        server.enqueue(cacheable("restricted"));
+        server.enqueue(cacheable("unrestricted again"));
+        final CacheControl maxStale = new CacheControl.Builder()
+                .maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS)
+                .build();
+
+        assertEquals("unrestricted", get("u:US:en", maxStale));
+        assertEquals("restricted", get("r:US:en", maxStale));
+        assertEquals("unrestricted again", get("u:US:en", maxStale));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotSendTheVariantHeader() throws Exception {
+        server.enqueue(cacheable("body"));
+
+        get("u:US:en", null);
+        assertNull(server.takeRequest().getHeader(VariantCacheInterceptor.HEADER));
+    }
+
+    @Test
+    public void keepsVaryOfTheServer() throws Exception {
+        server.enqueue(cacheable("body").setHeader("Vary", "Accept-Encoding"));
+
+        final Request request = new Request.Builder()
+                .url(server.url("/"))
+                .header(VariantCacheInterceptor.HEADER, "u:US:en")
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals("Accept-Encoding, " + VariantCacheInterceptor.HEADER,
+                    response.header("Vary"));
+        }
+    }
+
+    private static MockResponse cacheable(final String body) {
+        return new MockResponse().setBody(body).setHeader("Cache-Control", "max-age=60");
+    }
+
+    private String get(final String variant, final CacheControl cacheControl) throws IOException {
+        final Request.Builder builder = new Request.Builder()
+                .url(server.url("/watch"))
+                .header(VariantCacheInterceptor.HEADER, variant);
+        if (cacheControl != null) {
+            builder.cacheControl(cacheControl);
+        }
+        try (Response response = client.newCall(builder.build()).execute()) {
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.nidoham.skymate.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SuggestionTrieTest {
+
+    private final SuggestionTrie trie = new SuggestionTrie();
+
+    @Test
+    public void answersExactQuery() {
+        trie.put("rick", List.of("rick astley", "rick and morty"));
+
+        final SuggestionTrie.Match match = trie.get("rick");
+        assertNotNull(match);
+        assertTrue(match.exact);
+        assertEquals(List.of("rick astley", "rick and morty"), match.suggestions);
+    }
+
+    @Test
+    public void answersLongerQueryWithMatchingSuggestionsOfPrefix() {
+        trie.put("rick", List.of("rick astley", "Rick And Morty", "rickroll"));
+
+        final SuggestionTrie.Match match = trie.get("rick a");
+        assertNotNull(match);
+        assertFalse(match.exact);
+        assertEquals(List.of("rick astley", "Rick And Morty"), match.suggestions);
+    }
+
+    @Test
+    public void usesLongestCachedPrefix() {
+        trie.put("r", List.of("rust", "rick astley"));
+        trie.put("ri", List.of("rick and morty"));
+
+        final SuggestionTrie.Match match = trie.get("rick");
+        assertNotNull(match);
+        assertEquals(List.of("rick and morty"), match.suggestions);
+    }
+
+    @Test
+    public void hasNoAnswerWithoutMatchingPrefix() {
+        trie.put("rick", List.of("rick astley"));
+
+        assertNull(trie.get("ric")); // shorter than any cached query
+        assertNull(trie.get("morty"));
+        assertNull(trie.get("rick x")); // no cached suggestion matches
+    }
+
+    @Test
+    public void keepsCopyOfSuggestions() {
+        final List<String> suggestions = new ArrayList<>(List.of("rick astley"));
+        trie.put("rick", suggestions);
+        suggestions.clear();
+
+        assertEquals(List.of("rick astley"), trie.get("rick").suggestions);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() {
+        for (int i = 0; i < SuggestionTrie.MAX_ENTRIES; i++) {
+            trie.put("query " + i, List.of("query " + i + " suggestion"));
+        }
+        trie.get("query 0"); // used recently, so it is kept
+        trie.put("new", List.of("new suggestion"));
+
+        assertNotNull(trie.get("query 0"));
+        assertNull(trie.get("query 1"));
+        assertNotNull(trie.get("new"));
+    }
+
+    @Test
+    public void evictionKeepsEntriesBelowEvictedOne() {
+        trie.put("ri", List.of("rick astley"));
+        trie.put("rick", List.of("rick and morty"));
+        for (int i = 0; i < SuggestionTrie.MAX_ENTRIES - 1; i++) {
+            trie.put("query " + i, List.of());
+        }
+        trie.get("rick");
+        trie.put("new", List.of()); // evicts "ri", the parent of "rick"
+
+        assertNull(trie.get("ri"));
+        assertTrue(trie.get("rick").exact);
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        trie.put("rick", List.of("rick astley"));
+        trie.clear();
+
+        assertNull(trie.get("rick"));
+        assertNull(trie.get("rick a"));
+    }
+}
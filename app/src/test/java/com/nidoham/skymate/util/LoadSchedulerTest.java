@@ -0,0 +1,54 @@
+package com.nidoham.skymate.util;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+public class LoadSchedulerTest {
+
+    private final LoadScheduler scheduler = LoadScheduler.getInstance();
+
+    @Test
+    public void runsWork() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+
+        Completable.fromAction(ran::countDown)
+                .subscribeOn(scheduler.scheduler(null, LoadScheduler.Priority.VISIBLE))
+                .subscribe();
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void disposingInterruptsRunningWorkAndFreesItsSlot() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final Disposable blocking = Completable.fromAction(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+            }
+        })
+                .subscribeOn(scheduler.scheduler(null, LoadScheduler.Priority.BACKGROUND))
+                .subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        blocking.dispose();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        // BACKGROUND has a single slot, so this only runs once the blocked work gave it back
+        final CountDownLatch ran = new CountDownLatch(1);
+        Completable.fromAction(ran::countDown)
+                .subscribeOn(scheduler.scheduler(null, LoadScheduler.Priority.BACKGROUND))
+                .subscribe();
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+}
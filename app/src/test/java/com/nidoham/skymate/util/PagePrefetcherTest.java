@@ -0,0 +1,169 @@
+package com.nidoham.skymate.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.Page;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.android.plugins.RxAndroidPlugins;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subjects.SingleSubject;
+
+/**
+ * Pages are delivered on the thread completing their load, since the main thread scheduler is
+ * replaced by a trampoline.
+ */
+public class PagePrefetcherTest {
+
+    /** The pages asked for by the prefetcher, in order, each completed by the test. */
+    private final List<Load> loads = new ArrayList<>();
+    private final List<InfoItemsPage<StreamInfoItem>> delivered = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+
+    private final PagePrefetcher<StreamInfoItem> prefetcher = new PagePrefetcher<>(null, page -> {
+        final Load load = new Load(page);
+        loads.add(load);
+        return load.result;
+    }, "test");
+
+    @Before
+    public void setUp() {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+    }
+
+    @After
+    public void tearDown() {
+        prefetcher.dispose();
+        RxAndroidPlugins.reset();
+    }
+
+    @Test
+    public void deliversBufferedPageRightAway() throws Exception {
+        prefetcher.reset(new Page("2"));
+        final InfoItemsPage<StreamInfoItem> second = loads.get(0).complete("3");
+
+        requestNext();
+
+        assertEquals(List.of(second), delivered);
+        // and the page after it is read ahead
+        assertEquals(List.of("2", "3"), requestedPages());
+    }
+
+    @Test
+    public void deliversStalledPageOnceLoaded() throws Exception {
+        prefetcher.reset(new Page("2"));
+
+        requestNext();
+        assertTrue(prefetcher.isWaiting());
+        assertTrue(delivered.isEmpty());
+
+        final InfoItemsPage<StreamInfoItem> second = loads.get(0).complete("3");
+        assertFalse(prefetcher.isWaiting());
+        assertEquals(List.of(second), delivered);
+    }
+
+    @Test
+    public void retriesFailedPageOnNextRequest() throws Exception {
+        prefetcher.reset(new Page("2"));
+        requestNext();
+
+        final IOException failure = new IOException("offline");
+        loads.get(0).fail(failure);
+        assertEquals(1, errors.size());
+        assertSame(failure, errors.get(0));
+        assertFalse(prefetcher.isWaiting());
+        // not retried in the background
+        assertEquals(List.of("2"), requestedPages());
+
+        requestNext();
+        assertEquals(List.of("2", "2"), requestedPages());
+        final InfoItemsPage<StreamInfoItem> second = loads.get(1).complete("3");
+        assertEquals(List.of(second), delivered);
+    }
+
+    @Test
+    public void resetDropsInFlightPage() throws Exception {
+        prefetcher.reset(new Page("2"));
+        requestNext();
+        final Load stale = loads.get(0);
+        stale.awaitSubscribed();
+
+        prefetcher.reset(new Page("5"));
+        assertFalse(prefetcher.isWaiting());
+        assertFalse(stale.result.hasObservers());
+        stale.result.onSuccess(page("3"));
+        assertTrue(delivered.isEmpty());
+
+        requestNext();
+        final InfoItemsPage<StreamInfoItem> fifth = loads.get(1).complete(null);
+        assertEquals(List.of(fifth), delivered);
+        assertFalse(prefetcher.hasMore());
+    }
+
+    private void requestNext() {
+        prefetcher.requestNext(delivered::add, errors::add);
+    }
+
+    private List<String> requestedPages() {
+        final List<String> urls = new ArrayList<>();
+        for (final Load load : loads) {
+            urls.add(load.page.getUrl());
+        }
+        return urls;
+    }
+
+    private static InfoItemsPage<StreamInfoItem> page(final String nextPageUrl) {
+        return new InfoItemsPage<>(
+                List.of(new StreamInfoItem(0, "https://www.youtube.com/watch?v=a", "Video",
+                        StreamType.VIDEO_STREAM)),
+                nextPageUrl == null ? null : new Page(nextPageUrl), List.of());
+    }
+
+    private static final class Load {
+        final Page page;
+        final SingleSubject<InfoItemsPage<StreamInfoItem>> result = SingleSubject.create();
+
+        Load(final Page page) {
+            this.page = page;
+        }
+
+        /**
+         * Loads are subscribed to on a {@link LoadScheduler} thread. Completing them only after
+         * that makes the result be delivered on the test thread.
+         */
+        void awaitSubscribed() throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!result.hasObservers()) {
+                assertTrue("load was not subscribed to", System.nanoTime() < deadline);
+                Thread.sleep(1);
+            }
+        }
+
+        InfoItemsPage<StreamInfoItem> complete(final String nextPageUrl)
+                throws InterruptedException {
+            awaitSubscribed();
+            final InfoItemsPage<StreamInfoItem> itemsPage = page(nextPageUrl);
+            result.onSuccess(itemsPage);
+            return itemsPage;
+        }
+
+        void fail(final Throwable throwable) throws InterruptedException {
+            awaitSubscribed();
+            result.onError(throwable);
+        }
+    }
+}
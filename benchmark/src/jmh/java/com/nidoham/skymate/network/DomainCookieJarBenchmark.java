@@ -0,0 +1,63 @@
+package com.nidoham.skymate.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares {@code Cookie} header lookups of {@link DomainCookieJar} with the implementation it
+ * replaced, which rebuilt the header from a plain map on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DomainCookieJarBenchmark {
+
+    private static final String RESTRICTED_MODE_KEY = "youtube_restricted_mode_key";
+    private static final String RESTRICTED_MODE_COOKIE = "PREF=f2=8000000";
+    private static final String RECAPTCHA_KEY = "recaptcha_cookies";
+    private static final String RECAPTCHA_COOKIES =
+            "GOOGLE_ABUSE_EXEMPTION=ID=abc; PREF=f2=8000000";
+    private static final String HOST = "www.youtube.com";
+    private static final String URL = "https://www.youtube.com/youtubei/v1/browse";
+
+    private final Map<String, String> cookieMap = new HashMap<>();
+    private final DomainCookieJar jar = new DomainCookieJar();
+
+    @Setup
+    public void setUp() {
+        cookieMap.put(RESTRICTED_MODE_KEY, RESTRICTED_MODE_COOKIE);
+        cookieMap.put(RECAPTCHA_KEY, RECAPTCHA_COOKIES);
+        jar.put(RESTRICTED_MODE_KEY, RESTRICTED_MODE_COOKIE, "youtube.com");
+        jar.put(RECAPTCHA_KEY, RECAPTCHA_COOKIES, null);
+    }
+
+    @Benchmark
+    public String hashMapAndStream() {
+        final String youtubeCookie = URL.contains("youtube.com")
+                ? cookieMap.get(RESTRICTED_MODE_KEY) : null;
+
+        return Stream.of(youtubeCookie, cookieMap.get(RECAPTCHA_KEY))
+                .filter(Objects::nonNull)
+                .flatMap(cookie -> Arrays.stream(cookie.split("; *")))
+                .distinct()
+                .collect(Collectors.joining("; "));
+    }
+
+    @Benchmark
+    public String domainCookieJar() {
+        return jar.getCookieHeader(HOST);
+    }
+}